@@ -0,0 +1,157 @@
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Decodes song artwork on demand and keeps the scaled thumbnails in a bounded LRU cache.
+// Entries are keyed by artwork hash and size, so tracks sharing an album cover share one thumbnail,
+// and the cache is bounded by the pixel memory of the thumbnails rather than their number.
+public class CoverArtCache {
+
+    // Sizes used by the UI
+    public static final int THUMBNAIL_SIZE = 64;
+    public static final int COVER_SIZE = 225;
+
+    // Budget for decoded pixels (4 bytes per pixel), roughly 1000 thumbnails or 80 full covers
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final String DEFAULT_COVER_PATH = "src/assets/record.png";
+
+    private record Key(long artworkHash, int size) {
+    }
+
+    private static final LinkedHashMap<Key, ImageIcon> icons = new LinkedHashMap<>(64, 0.75f, true);
+    private static long usedBytes;
+    // Artwork that could not be read or decoded, so it is not tried again on every repaint
+    private static final Set<Key> failed = new HashSet<>();
+
+    // Placeholder icons per size, for songs without artwork
+    private static final Map<Integer, ImageIcon> defaultIcons = new LinkedHashMap<>();
+
+    // Background decoding for list rows, so scrolling never waits on ImageIO
+    private static final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cover-art-decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<Key> pending = new HashSet<>();
+
+    private CoverArtCache() {
+    }
+
+    // Return the song artwork scaled to size x size, or null if the song has no artwork or it can't
+    // be decoded
+    public static ImageIcon getIcon(Song song, int size) {
+        if (!song.hasArtwork()) return null;
+
+        Key key = new Key(song.getArtworkHash(), size);
+        synchronized (icons) {
+            ImageIcon icon = icons.get(key);
+            if (icon != null || failed.contains(key)) return icon;
+        }
+
+        ImageIcon icon = decode(song.readArtworkData(), size);
+        if (icon == null) {
+            synchronized (icons) {
+                failed.add(key);
+            }
+            return null;
+        }
+
+        synchronized (icons) {
+            if (icons.put(key, icon) == null) {
+                usedBytes += bytes(icon);
+            }
+            evict();
+        }
+        return icon;
+    }
+
+    // Return the thumbnail if it is cached, otherwise decode it in the background, call onLoaded
+    // on the EDT once it is available and return null for now
+    public static ImageIcon getIconAsync(Song song, int size, Runnable onLoaded) {
+        if (!song.hasArtwork()) return null;
+
+        Key key = new Key(song.getArtworkHash(), size);
+        synchronized (icons) {
+            ImageIcon icon = icons.get(key);
+            if (icon != null || failed.contains(key) || !pending.add(key)) return icon;
+        }
+
+        decoder.execute(() -> {
+            ImageIcon icon = getIcon(song, size);
+            synchronized (icons) {
+                pending.remove(key);
+            }
+            if (icon != null) SwingUtilities.invokeLater(onLoaded);
+        });
+        return null;
+    }
+
+    public static ImageIcon getDefaultIcon(int size) {
+        synchronized (defaultIcons) {
+            return defaultIcons.computeIfAbsent(size, s -> {
+                try {
+                    return new ImageIcon(scale(ImageIO.read(new File(DEFAULT_COVER_PATH)), s));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return new ImageIcon(new BufferedImage(s, s, BufferedImage.TYPE_INT_ARGB));
+                }
+            });
+        }
+    }
+
+    private static ImageIcon decode(byte[] imageData, int size) {
+        if (imageData == null) return null;
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+            if (image == null) return null;
+
+            // Only the thumbnail is kept, the full resolution image is garbage right away
+            return new ImageIcon(scale(image, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        // Halve large images first, a single bicubic pass from a big cover looks grainy
+        while (image.getWidth() / 2 >= size && image.getHeight() / 2 >= size) {
+            image = resize(image, image.getWidth() / 2, image.getHeight() / 2);
+        }
+        return resize(image, size, size);
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static long bytes(ImageIcon icon) {
+        return 4L * icon.getIconWidth() * icon.getIconHeight();
+    }
+
+    // Drop least recently used thumbnails until we are back under budget
+    private static void evict() {
+        Iterator<ImageIcon> iterator = icons.values().iterator();
+        while (usedBytes > MAX_BYTES && iterator.hasNext()) {
+            usedBytes -= bytes(iterator.next());
+            iterator.remove();
+        }
+    }
+}
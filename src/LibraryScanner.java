@@ -0,0 +1,81 @@
+import javax.swing.*;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Scans the library folder in the background and streams the parsed songs back to the EDT.
+// Song objects are built concurrently on a bounded worker pool; SwingWorker coalesces the
+// published songs into batches so the library window can render them as they arrive.
+public class LibraryScanner extends SwingWorker<Integer, Song> {
+
+    private final File[] files;
+    private final Consumer<List<Song>> onSongsLoaded;
+    private final Runnable onFinished;
+    private ExecutorService workers;
+
+    public LibraryScanner(File libraryDir, Consumer<List<Song>> onSongsLoaded, Runnable onFinished) {
+        File[] lists = libraryDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".mp3"));
+        this.files = (lists != null) ? lists : new File[0];
+        this.onSongsLoaded = onSongsLoaded;
+        this.onFinished = onFinished;
+    }
+
+    public int getTotalFiles() {
+        return files.length;
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        if (files.length == 0) return 0;
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.length));
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "library-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // Parse every file on the pool and publish each song as soon as it is ready
+            CompletionService<Song> completionService = new ExecutorCompletionService<>(workers);
+            for (File file : files) {
+                String path = file.getAbsolutePath();
+                completionService.submit(() -> SongRegistry.getInstance().get(path));
+            }
+
+            int loaded = 0;
+            for (int i = 0; i < files.length && !isCancelled(); i++) {
+                try {
+                    Song song = completionService.take().get();
+                    if (song.getSongTitle() != null) {
+                        publish(song);
+                        loaded++;
+                    }
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+                setProgress((i + 1) * 100 / files.length);
+            }
+            return loaded;
+        } finally {
+            workers.shutdownNow();
+
+            // Persist the freshly parsed metadata so the next start can skip those files
+            SongMetadataCache.getInstance().save();
+        }
+    }
+
+    @Override
+    protected void process(List<Song> songs) {
+        // Runs on the EDT, so the receiver can touch the tree and the UI without locking
+        if (!isCancelled()) {
+            onSongsLoaded.accept(songs);
+        }
+    }
+
+    @Override
+    protected void done() {
+        onFinished.run();
+    }
+}
@@ -0,0 +1,89 @@
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.player.AudioDevice;
+import javazoom.jl.player.AudioDeviceBase;
+import javazoom.jl.player.AudioDeviceFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+// Audio output on a Java Sound line, like jlayer's JavaSoundAudioDevice, but the line can be
+// paused and resumed. Stopping the line keeps the samples already written to it, so a paused
+// song continues exactly where it was without reopening anything.
+public class LineAudioDevice extends AudioDeviceBase {
+
+    // Registered in jlayer's FactoryRegistry in place of the Java Sound factory
+    public static class Factory extends AudioDeviceFactory {
+        @Override
+        public AudioDevice createAudioDevice() {
+            return new LineAudioDevice();
+        }
+    }
+
+    private SourceDataLine line;
+    private byte[] byteBuffer = new byte[4096];
+    private volatile boolean paused;
+
+    // Stop the line, what it still holds is played after resume()
+    public synchronized void pause() {
+        paused = true;
+        if (line != null) line.stop();
+    }
+
+    public synchronized void resume() {
+        paused = false;
+        if (line != null) line.start();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // The line format is only known once the decoder produced the first frame
+    private synchronized void createLine() throws JavaLayerException {
+        Decoder decoder = getDecoder();
+        AudioFormat format = new AudioFormat(decoder.getOutputFrequency(), 16,
+                decoder.getOutputChannels(), true, false);
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format);
+            if (!paused) line.start();
+        } catch (Exception e) {
+            throw new JavaLayerException("cannot open audio line", e);
+        }
+    }
+
+    // Blocks while the line buffer is full, never call it while paused
+    @Override
+    protected void writeImpl(short[] samples, int offset, int length) throws JavaLayerException {
+        if (line == null) createLine();
+
+        if (byteBuffer.length < length * 2) {
+            byteBuffer = new byte[length * 2];
+        }
+        for (int i = 0; i < length; i++) {
+            short sample = samples[offset + i];
+            byteBuffer[i * 2] = (byte) sample;
+            byteBuffer[i * 2 + 1] = (byte) (sample >>> 8);
+        }
+        line.write(byteBuffer, 0, length * 2);
+    }
+
+    @Override
+    protected void flushImpl() {
+        if (line != null && !paused) line.drain();
+    }
+
+    @Override
+    protected synchronized void closeImpl() {
+        if (line != null) line.close();
+    }
+
+    // Milliseconds played by the line, frozen while paused
+    @Override
+    public int getPosition() {
+        SourceDataLine current = line;
+        return (current != null) ? (int) (current.getMicrosecondPosition() / 1000) : 0;
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads the ID3v2 tag, the artwork and the duration of an MP3 in a single pass over a FileChannel.
+// Only the tag and the first audio frames are read: the duration comes from the Xing/Info (LAME)
+// or VBRI header when there is one, otherwise it is derived from the constant bitrate of the
+// first frame, so the audio data itself is never walked.
+public class Mp3Metadata {
+
+    // How far past the tag we look for the first MPEG frame
+    private static final int SYNC_SEARCH_LENGTH = 64 * 1024;
+
+    // Bitrates in kbps indexed by [MPEG1 ? 0 : 1][layer - 1][bitrate index]
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+            }
+    };
+
+    // Sample rates indexed by [version bits][sample rate index], version bits 1 is reserved
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG 2.5
+            {0, 0, 0},
+            {22050, 24000, 16000},  // MPEG 2
+            {44100, 48000, 32000}   // MPEG 1
+    };
+
+    private String title;
+    private String artist;
+    private String album;
+    private byte[] artworkData;
+    private long artworkOffset = -1;
+    private boolean tagUnsynchronised;
+    private int frameCount;
+    private long lengthInMilliseconds;
+
+    private Mp3Metadata() {
+    }
+
+    // Returns null when the file uses something this reader does not understand
+    public static Mp3Metadata read(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            Mp3Metadata metadata = new Mp3Metadata();
+            long audioStart = metadata.readId3v2Tag(channel);
+            if (audioStart < 0 || !metadata.readDuration(channel, audioStart)) {
+                return null;
+            }
+            return metadata;
+        }
+    }
+
+    // Getters
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public byte[] getArtworkData() {
+        return artworkData;
+    }
+
+    // Position of the artwork bytes in the file, or -1 when they are not stored verbatim
+    public long getArtworkOffset() {
+        return artworkOffset;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getLengthInMilliseconds() {
+        return lengthInMilliseconds;
+    }
+
+    // Parse the tag at the start of the file and return the offset of the audio data, or -1
+    private long readId3v2Tag(FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 0, 10);
+        if (header == null || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            // No tag, same as jaudiotagger returning a null tag
+            title = "N/A";
+            artist = "N/A";
+            album = "";
+            return 0;
+        }
+
+        int majorVersion = header.get(3);
+        int flags = header.get(5) & 0xff;
+        int tagSize = syncSafe(header, 6);
+        long audioStart = 10L + tagSize + ((flags & 0x10) != 0 ? 10 : 0);
+        if (majorVersion < 2 || majorVersion > 4) {
+            return -1;
+        }
+
+        ByteBuffer tag = readFully(channel, 10, tagSize);
+        if (tag == null) return -1;
+
+        // Whole tag unsynchronisation (ID3v2.2/2.3)
+        if ((flags & 0x80) != 0 && majorVersion < 4) {
+            tag = removeUnsynchronisation(tag);
+            tagUnsynchronised = true;
+        }
+
+        // Skip the extended header
+        if ((flags & 0x40) != 0 && majorVersion > 2) {
+            int extendedSize = (majorVersion == 4) ? syncSafe(tag, 0) : tag.getInt(0) + 4;
+            tag.position(extendedSize);
+        }
+
+        readFrames(tag, majorVersion);
+
+        if (title == null) title = "";
+        if (artist == null) artist = "";
+        if (album == null) album = "";
+        return audioStart;
+    }
+
+    private void readFrames(ByteBuffer tag, int majorVersion) {
+        int idLength = (majorVersion == 2) ? 3 : 4;
+        int headerLength = (majorVersion == 2) ? 6 : 10;
+
+        while (tag.remaining() >= headerLength) {
+            int start = tag.position();
+            if (tag.get(start) == 0) break; // padding
+
+            String id = new String(bytes(tag, start, idLength), StandardCharsets.ISO_8859_1);
+            int size;
+            int formatFlags = 0;
+            if (majorVersion == 2) {
+                size = ((tag.get(start + 3) & 0xff) << 16) | ((tag.get(start + 4) & 0xff) << 8) | (tag.get(start + 5) & 0xff);
+            } else {
+                size = (majorVersion == 4) ? syncSafe(tag, start + 4) : tag.getInt(start + 4);
+                formatFlags = tag.get(start + 9) & 0xff;
+            }
+
+            int dataStart = start + headerLength;
+            if (size <= 0 || dataStart + size > tag.limit()) break;
+            tag.position(dataStart + size);
+
+            boolean wanted = id.equals("TIT2") || id.equals("TT2") || id.equals("TPE1") || id.equals("TP1")
+                    || id.equals("TALB") || id.equals("TAL")
+                    || ((id.equals("APIC") || id.equals("PIC")) && artworkData == null);
+            if (!wanted) continue;
+
+            // Track where the frame content sits in the file while stripping the optional prefixes
+            int contentStart = dataStart;
+            boolean verbatim = !tagUnsynchronised;
+            if (majorVersion == 4) {
+                // Compressed or encrypted frames are left to the fallback reader
+                if ((formatFlags & 0x0C) != 0) continue;
+                if ((formatFlags & 0x40) != 0) contentStart++;
+                if ((formatFlags & 0x01) != 0) contentStart += 4;
+            } else if (majorVersion == 3) {
+                if ((formatFlags & 0xC0) != 0) continue;
+                if ((formatFlags & 0x20) != 0) contentStart++;
+            }
+            if (contentStart > dataStart + size) continue;
+
+            ByteBuffer frame = tag.slice(contentStart, dataStart + size - contentStart);
+            if (majorVersion == 4 && (formatFlags & 0x02) != 0) {
+                frame = removeUnsynchronisation(frame);
+                verbatim = false;
+            }
+
+            switch (id) {
+                case "TIT2", "TT2" -> title = readTextFrame(frame);
+                case "TPE1", "TP1" -> artist = readTextFrame(frame);
+                case "TALB", "TAL" -> album = readTextFrame(frame);
+                default -> {
+                    int pictureStart = findPictureData(frame, id.equals("PIC"));
+                    if (pictureStart >= 0) {
+                        artworkData = bytes(frame, pictureStart, frame.limit() - pictureStart);
+                        artworkOffset = verbatim ? 10 + contentStart + pictureStart : -1;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String readTextFrame(ByteBuffer frame) {
+        if (frame.limit() < 1) return "";
+        int encoding = frame.get(0);
+        String text = new String(bytes(frame, 1, frame.limit() - 1), charset(encoding));
+
+        // Only the first value of multi-valued frames, like tag.getFirst()
+        int end = text.indexOf('\0');
+        return (end >= 0) ? text.substring(0, end) : text;
+    }
+
+    // Index of the image bytes inside an APIC/PIC frame, or -1
+    private static int findPictureData(ByteBuffer frame, boolean id3v22) {
+        int limit = frame.limit();
+        if (limit < 2) return -1;
+        int encoding = frame.get(0);
+        int position;
+        if (id3v22) {
+            // Encoding, 3 char image format, picture type
+            position = 5;
+        } else {
+            // Encoding, null terminated mime type, picture type
+            position = 1;
+            while (position < limit && frame.get(position) != 0) position++;
+            position += 2;
+        }
+
+        // Skip the description, terminated by one or two zero bytes depending on the encoding
+        boolean wide = encoding == 1 || encoding == 2;
+        while (position < limit) {
+            if (wide) {
+                if (position + 1 < limit && frame.get(position) == 0 && frame.get(position + 1) == 0) {
+                    position += 2;
+                    break;
+                }
+                position += 2;
+            } else {
+                if (frame.get(position++) == 0) break;
+            }
+        }
+
+        return (position < limit) ? position : -1;
+    }
+
+    // Find the first MPEG frame and compute frame count and length from it
+    private boolean readDuration(FileChannel channel, long audioStart) throws IOException {
+        long fileSize = channel.size();
+        int searchLength = (int) Math.min(SYNC_SEARCH_LENGTH, fileSize - audioStart);
+        ByteBuffer audio = readFully(channel, audioStart, searchLength);
+        if (audio == null) return false;
+
+        int offset = findFrameSync(audio);
+        if (offset < 0) return false;
+
+        int header = audio.getInt(offset);
+        int versionBits = (header >>> 19) & 3;
+        int layer = 4 - ((header >>> 17) & 3);
+        int sampleRate = SAMPLE_RATES[versionBits][(header >>> 10) & 3];
+        int samplesPerFrame = (layer == 1) ? 384 : (layer == 3 && versionBits != 3) ? 576 : 1152;
+
+        int frames = readVbrFrameCount(audio, offset, header);
+        if (frames > 0) {
+            frameCount = frames;
+        } else {
+            // Constant bitrate: every frame has the same average length
+            long audioEnd = fileSize - (hasId3v1Tag(channel, fileSize) ? 128 : 0);
+            double averageFrameLength = averageFrameLength(header);
+            frameCount = (int) Math.round((audioEnd - audioStart - offset) / averageFrameLength);
+        }
+
+        lengthInMilliseconds = (long) frameCount * samplesPerFrame * 1000 / sampleRate;
+        return frameCount > 0;
+    }
+
+    // Offset of the first MPEG frame in the buffer, or -1
+    private static int findFrameSync(ByteBuffer audio) {
+        for (int offset = 0; offset + 4 <= audio.limit(); offset++) {
+            int frameLength = frameLength(audio.getInt(offset));
+            if (frameLength <= 0) continue;
+
+            // Require the next frame to line up as well to avoid false syncs inside the tag padding
+            int next = offset + frameLength;
+            if (next + 4 <= audio.limit() && frameLength(audio.getInt(next)) <= 0) continue;
+
+            return offset;
+        }
+        return -1;
+    }
+
+    // File position of the first MPEG frame, after the ID3v2 tag if there is one, or -1
+    static long findFirstFrame(FileChannel channel) throws IOException {
+        long audioStart = 0;
+        ByteBuffer header = readFully(channel, 0, 10);
+        if (header != null && header.get(0) == 'I' && header.get(1) == 'D' && header.get(2) == '3') {
+            audioStart = 10L + syncSafe(header, 6) + ((header.get(5) & 0x10) != 0 ? 10 : 0);
+        }
+
+        int searchLength = (int) Math.min(SYNC_SEARCH_LENGTH, channel.size() - audioStart);
+        ByteBuffer audio = readFully(channel, audioStart, searchLength);
+        if (audio == null) return -1;
+
+        int offset = findFrameSync(audio);
+        return (offset < 0) ? -1 : audioStart + offset;
+    }
+
+    // Frame count stored in a Xing/Info or VBRI header, or -1
+    private static int readVbrFrameCount(ByteBuffer audio, int frameStart, int header) {
+        boolean mpeg1 = ((header >>> 19) & 3) == 3;
+        boolean mono = ((header >>> 6) & 3) == 3;
+        int xingOffset = frameStart + (mpeg1 ? (mono ? 21 : 36) : (mono ? 13 : 21));
+
+        if (xingOffset + 12 <= audio.limit()) {
+            String id = new String(bytes(audio, xingOffset, 4), StandardCharsets.ISO_8859_1);
+            if ((id.equals("Xing") || id.equals("Info")) && (audio.getInt(xingOffset + 4) & 1) != 0) {
+                return audio.getInt(xingOffset + 8);
+            }
+        }
+
+        int vbriOffset = frameStart + 36;
+        if (vbriOffset + 18 <= audio.limit()
+                && new String(bytes(audio, vbriOffset, 4), StandardCharsets.ISO_8859_1).equals("VBRI")) {
+            return audio.getInt(vbriOffset + 14);
+        }
+        return -1;
+    }
+
+    // Length in bytes of the frame starting with this header, or -1 if it is not a valid header
+    static int frameLength(int header) {
+        if ((header >>> 21) != 0x7FF) return -1;
+        int versionBits = (header >>> 19) & 3;
+        int layerBits = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 3;
+        if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+
+        int layer = 4 - layerBits;
+        int bitrate = BITRATES[versionBits == 3 ? 0 : 1][layer - 1][bitrateIndex] * 1000;
+        int sampleRate = SAMPLE_RATES[versionBits][sampleRateIndex];
+        int padding = (header >>> 9) & 1;
+
+        if (layer == 1) return (12 * bitrate / sampleRate + padding) * 4;
+        if (layer == 3 && versionBits != 3) return 72 * bitrate / sampleRate + padding;
+        return 144 * bitrate / sampleRate + padding;
+    }
+
+    private static double averageFrameLength(int header) {
+        int versionBits = (header >>> 19) & 3;
+        int layer = 4 - ((header >>> 17) & 3);
+        double bitrate = BITRATES[versionBits == 3 ? 0 : 1][layer - 1][(header >>> 12) & 0xF] * 1000.0;
+        int sampleRate = SAMPLE_RATES[versionBits][(header >>> 10) & 3];
+
+        if (layer == 1) return 48 * bitrate / sampleRate;
+        if (layer == 3 && versionBits != 3) return 72 * bitrate / sampleRate;
+        return 144 * bitrate / sampleRate;
+    }
+
+    private static boolean hasId3v1Tag(FileChannel channel, long fileSize) throws IOException {
+        if (fileSize < 128) return false;
+        ByteBuffer tag = readFully(channel, fileSize - 128, 3);
+        return tag != null && tag.get(0) == 'T' && tag.get(1) == 'A' && tag.get(2) == 'G';
+    }
+
+    // Helpers
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (length < 0 || position + length > channel.size()) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) return null;
+        }
+        return buffer.flip();
+    }
+
+    private static int syncSafe(ByteBuffer buffer, int index) {
+        return ((buffer.get(index) & 0x7f) << 21) | ((buffer.get(index + 1) & 0x7f) << 14)
+                | ((buffer.get(index + 2) & 0x7f) << 7) | (buffer.get(index + 3) & 0x7f);
+    }
+
+    // Drop the zero byte inserted after every 0xFF by the ID3 unsynchronisation scheme
+    private static ByteBuffer removeUnsynchronisation(ByteBuffer buffer) {
+        int position = buffer.position();
+        byte[] out = new byte[buffer.limit() - position];
+        int length = 0;
+        for (int i = position; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            out[length++] = b;
+            if (b == (byte) 0xFF && i + 1 < buffer.limit() && buffer.get(i + 1) == 0) i++;
+        }
+        return ByteBuffer.wrap(out, 0, length).slice();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int index, int length) {
+        byte[] out = new byte[length];
+        buffer.get(index, out);
+        return out;
+    }
+
+    private static Charset charset(int encoding) {
+        return switch (encoding) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+    }
+}
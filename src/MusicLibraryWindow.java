@@ -1,42 +1,58 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.text.Position;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.*;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 public class MusicLibraryWindow extends JFrame {
 
     private final MusicPlayerGUI musicPlayerGUI;
     private QueueViewerWindow queueViewerWindow;
-    private JPanel selectedPanel = null;
     private final MusicPlayer musicPlayer;
-    private final ArrayList<Song> allSongs;
+    // Sorted view of the whole library straight from the tree, rows are looked up by position
+    private final List<Song> allSongs;
     private final ArrayList<Song> displayedSongs;
-    private final JPanel songListPanel;
+    private final SongListModel songListModel = new SongListModel();
+    private final JList<Song> songList;
     private final JTextField searchBar;
 
-    // HashMap to store song title -> file path
-    public static final HashMap<String, String> songMap = new HashMap<>();
     private final SongTree songTreeNew = new SongTree();
+    // Word and trigram index for the search bar
+    private final SongSearchIndex searchIndex = new SongSearchIndex();
+    // Search running off the EDT, cancelled when a newer query replaces it
+    private SwingWorker<ArrayList<Song>, Void> searchWorker;
+    // Search as you type, started once the keystrokes pause
+    private Timer typeAheadTimer;
+    private static final int TYPE_AHEAD_DELAY = 150;
+    private static final int TYPE_AHEAD_RESULTS = 50;
 
     private JLabel nowPlayingText;
+
+    // Background library scan
+    private LibraryScanner libraryScanner;
+    private JProgressBar scanProgressBar;
+    private JButton cancelScanButton;
     private boolean isAscending = true;  // Default is A → Z
 
     String currentPlaylistName;
+    // Playlist file being read, if any
+    private PlaylistLoader playlistLoader;
 
     public MusicLibraryWindow(MusicPlayerGUI musicPlayerGUI) {
         this.musicPlayerGUI = musicPlayerGUI;
         this.musicPlayer = musicPlayerGUI.musicPlayer;
-        this.allSongs = new ArrayList<>();
+        this.allSongs = songTreeNew.asList();
         this.displayedSongs = new ArrayList<>();
 
         setTitle("Music Library");
@@ -82,7 +98,7 @@ public class MusicLibraryWindow extends JFrame {
         currentPlaylist.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                LinkedList<Song> playlist = musicPlayer.getPlaylist();
+                Playlist playlist = musicPlayer.getPlaylist();
 
                 if (playlist == null || playlist.isEmpty()) {
                     JOptionPane.showMessageDialog(MusicLibraryWindow.this,
@@ -112,37 +128,73 @@ public class MusicLibraryWindow extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 JFileChooser jFileChooser = new JFileChooser();
-                jFileChooser.setFileFilter(new FileNameExtensionFilter("playlist", "txt"));
+                jFileChooser.setFileFilter(new FileNameExtensionFilter("playlist", "txt", PlaylistFile.EXTENSION));
                 jFileChooser.setCurrentDirectory(new File("src/playlist"));
 
                 int result = jFileChooser.showOpenDialog(musicPlayerGUI);
                 File selectedFile = jFileChooser.getSelectedFile();
 
-                if(result == JFileChooser.APPROVE_OPTION && selectedFile != null && musicPlayer.loadPlaylist(selectedFile)){
-                    // stop the music
-                    musicPlayer.stopSong();
+                if(result != JFileChooser.APPROVE_OPTION || selectedFile == null) return;
 
-                    // load playlist
-                    musicPlayer.loadPlaylist(selectedFile);
+                // stop the music
+                musicPlayer.stopSong();
+
+                // Show the window right away, rows stream in while the file is read in the background
+                String playlistName = selectedFile.getName().replaceFirst("\\.(txt|" + PlaylistFile.EXTENSION + ")$", "");
+                PlaylistViewerWindow viewer = new PlaylistViewerWindow(playlistName, new Playlist(), musicPlayerGUI.musicPlayer, musicPlayerGUI);
+                viewer.setLoading(true);
 
-                    LinkedList<Song> playlist = musicPlayer.getPlaylist();
-                    String playlistName = selectedFile.getName().replace(".txt", "");
+                if (playlistLoader != null) playlistLoader.cancel(true);
+                PlaylistLoader[] loader = new PlaylistLoader[1];
+                loader[0] = new PlaylistLoader(selectedFile, viewer::addSongs, songs -> {
+                    if (songs == null) {
+                        viewer.dispose();
+                        JOptionPane.showMessageDialog(MusicLibraryWindow.this,
+                                "Playlist file cannot be loaded.", "Warning", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
+                    // load playlist
+                    musicPlayer.setPlaylist(viewer.getPlaylist());
                     currentPlaylistName = playlistName;
-                    new PlaylistViewerWindow(playlistName, playlist, musicPlayerGUI.musicPlayer, musicPlayerGUI);
-                } else{
-                    JOptionPane.showMessageDialog(MusicLibraryWindow.this,
-                            "Playlist file cannot be loaded.", "Warning", JOptionPane.WARNING_MESSAGE);
-                }
+                    viewer.setLoading(false);
+                    PlaylistLoader.showMissingSongs(viewer, loader[0].getMissingSongs());
+                }, viewer::loadingCancelled);
+                // A text playlist is matched by title, wait for the scan to know every song
+                loader[0].setLibraryScan(libraryScanner);
+                playlistLoader = loader[0];
+                playlistLoader.execute();
             }
         });
 
         playlistMenu.add(loadPlaylist);
 
+        // Gapless playback between songs of the queue / playlist
+        JCheckBoxMenuItem gaplessItem = new JCheckBoxMenuItem("Gapless Playback", true);
+        gaplessItem.addActionListener(e -> musicPlayer.setGapless(gaplessItem.isSelected()));
+        playlistMenu.add(gaplessItem);
+
         topPanel.add(toolBar, BorderLayout.NORTH);
 
         // Search Bar
         searchBar = new JTextField();
         searchBar.addActionListener(e -> performClosestSearch());
+        typeAheadTimer = new Timer(TYPE_AHEAD_DELAY, e -> performTypeAheadSearch());
+        typeAheadTimer.setRepeats(false);
+        searchBar.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typeAheadTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typeAheadTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
 
         // Button to clear the search bar
         JButton clearSearchBtn = new JButton("❌");
@@ -150,9 +202,7 @@ public class MusicLibraryWindow extends JFrame {
         clearSearchBtn.setMargin(new Insets(0, 5, 0, 5));
         clearSearchBtn.addActionListener(e -> {
             searchBar.setText("");
-            displayedSongs.clear();
-            displayedSongs.addAll(allSongs);
-            renderSongList();
+            performClosestSearch();
             searchBar.requestFocusInWindow();
         });
 
@@ -186,9 +236,8 @@ public class MusicLibraryWindow extends JFrame {
         sortToggleButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         sortToggleButton.addActionListener(e -> {
             isAscending = !isAscending;
-            Collections.reverse(displayedSongs);
             sortToggleButton.setText(isAscending ? "↓ A → Z" : "↑ Z → A");
-            renderSongList();  // Re-render song list based on new order
+            songListModel.setAscending(isAscending);  // Only flips how the model indexes the list
         });
 
         sortPanel.add(sortLabel);
@@ -202,9 +251,27 @@ public class MusicLibraryWindow extends JFrame {
 
 
         // --- Center Song List ---
-        songListPanel = new JPanel();
-        songListPanel.setLayout(new BoxLayout(songListPanel, BoxLayout.Y_AXIS));
-        JScrollPane scrollPane = new JScrollPane(songListPanel);
+        // Only the visible rows are painted, all through one shared renderer
+        songList = new JList<>(songListModel) {
+            // Typing a title prefix jumps to it through the tree instead of checking every row.
+            // Like JList, the search starts at startIndex and wraps around, so typing the same
+            // letter again moves on to the next song starting with it
+            @Override
+            public int getNextMatch(String prefix, int startIndex, Position.Bias bias) {
+                if (songListModel.getSongs() != allSongs || !isAscending
+                        || prefix == null || startIndex < 0 || startIndex >= songListModel.getSize()) {
+                    return super.getNextMatch(prefix, startIndex, bias);
+                }
+                return songTreeNew.nextIndexOfPrefix(prefix, startIndex, bias == Position.Bias.Backward);
+            }
+        };
+        songList.setCellRenderer(new SongCellRenderer(true));
+        songList.setFixedCellHeight(SongCellRenderer.ROW_HEIGHT);
+        songList.setFixedCellWidth(SongCellRenderer.ROW_WIDTH);  // Rows stretch to the viewport, no need to measure every song
+        songList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        songList.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        songList.addMouseListener(createSongListMouseListener());
+        JScrollPane scrollPane = new JScrollPane(songList);
         // Increase vertical scroll speed
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
@@ -221,6 +288,20 @@ public class MusicLibraryWindow extends JFrame {
         bottomPanel.add(nowPlayingLabel, BorderLayout.WEST);
         bottomPanel.add(nowPlayingText, BorderLayout.CENTER);
 
+        // Library scan progress + cancel, hidden once the scan is over
+        JPanel scanPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        scanPanel.setOpaque(false);
+        scanProgressBar = new JProgressBar(0, 100);
+        scanProgressBar.setStringPainted(true);
+        cancelScanButton = new JButton("Cancel");
+        cancelScanButton.setMargin(new Insets(0, 5, 0, 5));
+        cancelScanButton.addActionListener(e -> {
+            if (libraryScanner != null) libraryScanner.cancel(true);
+        });
+        scanPanel.add(scanProgressBar);
+        scanPanel.add(cancelScanButton);
+        bottomPanel.add(scanPanel, BorderLayout.EAST);
+
         bottomPanel.addMouseListener(new MouseAdapter() {
             private long lastClickTime = 0;
 
@@ -239,7 +320,6 @@ public class MusicLibraryWindow extends JFrame {
 
 
         loadSongsFromLibraryFolder();
-        renderSongList();
 
         // Timer to monitor current playing song
         Timer songChecker = new Timer(1000, e -> {
@@ -247,9 +327,6 @@ public class MusicLibraryWindow extends JFrame {
 //            queueViewerWindow = new QueueViewerWindow(musicPlayer);
 //            queueViewerWindow.setVisible(true);
 
-            if (queueViewerWindow != null && queueViewerWindow.isDisplayable()) {
-                queueViewerWindow.updateQueueUI(musicPlayer.getQueue());
-            }
             if (current != null) {
                 String display = current.getSongTitle() + " - " + current.getSongArtist();
                 if (!nowPlayingText.getText().equals(display)) {
@@ -267,140 +344,107 @@ public class MusicLibraryWindow extends JFrame {
     private void loadSongsFromLibraryFolder() {
         File libraryDir = new File("./src/Library");
 
-        File[] lists = libraryDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".mp3"));
+        if (libraryScanner != null) libraryScanner.cancel(true);
 
+        displayedSongs.clear();
+        songTreeNew.clear();
+        searchIndex.clear();
+        showAllSongs();
+
+        // Parse the songs off the EDT and add them to the library batch by batch
+        libraryScanner = new LibraryScanner(libraryDir, this::addScannedSongs, this::scanFinished);
+        LibraryScanner scanner = libraryScanner;
+        scanner.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName()) && scanner == libraryScanner) {
+                scanProgressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        scanProgressBar.setValue(0);
+        scanProgressBar.setString("Scanning " + scanner.getTotalFiles() + " songs");
+        scanProgressBar.getParent().setVisible(true);
+        scanner.execute();
+    }
 
-        allSongs.clear();
-        songMap.clear();
+    // Called on the EDT with every batch of songs parsed by the library scanner
+    private void addScannedSongs(List<Song> songs) {
+        songTreeNew.insertAll(songs);
+        searchIndex.addAll(songs);
 
-        if (lists != null) {
-            for (File file : lists) {
-                String path = file.getAbsolutePath();
+        // Keep search results on screen while the scan is still running
+        refreshSearch();
+    }
 
-                // Basic Song object (artist unknown here)
-                Song song = new Song(path);
-                songMap.put(song.getSongTitle(), path);
-                songTreeNew.insert(song);
-            }
-        }
-        allSongs.addAll(songTreeNew.getSortedSongList());
-        displayedSongs.clear();
-        displayedSongs.addAll(allSongs);
+    private void scanFinished() {
+        scanProgressBar.getParent().setVisible(false);
     }
 
     private void renderSongList() {
-        songListPanel.removeAll();
+        songListModel.setSongs(displayedSongs);
+    }
 
-        for (Song song : displayedSongs) {
-            JPanel songPanel = new JPanel(new BorderLayout());
-            songPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-            songPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 80));
-            songPanel.setBackground(Color.WHITE);
-            songPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
+    // The whole library, read from the tree row by row without building a list
+    private void showAllSongs() {
+        songListModel.setSongs(allSongs);
+    }
 
-            // Mouse listener for selection and playback
-            songPanel.addMouseListener(new MouseAdapter() {
-                private long lastClickTime = 0;
+    private MouseAdapter createSongListMouseListener() {
+        // Popup menu shared by every row, acting on the row it was opened on
+        JPopupMenu popupMenu = new JPopupMenu();
+        Song[] popupSong = new Song[1];
 
-                @Override
-                public void mouseClicked(MouseEvent e) {
+        JMenuItem queueItem = new JMenuItem("Queue");
+        queueItem.addActionListener(e -> {
+            musicPlayer.addToQueue(popupSong[0]);
+        });
+        JMenuItem playNextItem = new JMenuItem("Play Next");
+        playNextItem.addActionListener(e -> musicPlayer.queueNext(popupSong[0]));
+        JMenuItem playlistItem = new JMenuItem("Add to Playlist");
+        playlistItem.addActionListener(e -> MusicPlaylistDialog.addToPlaylist(MusicLibraryWindow.this, popupSong[0]));
+        JMenuItem removeItem = new JMenuItem("Remove");
+
+        popupMenu.add(queueItem);
+        popupMenu.add(playNextItem);
+        popupMenu.add(playlistItem);
+        popupMenu.add(removeItem);
+
+        // remove
+        removeItem.addActionListener(e -> {
+            Song song = popupSong[0];
+            File songFile = new File(song.getFilePath());
+            if (songFile.exists()) songFile.delete();
+
+            displayedSongs.remove(song);
+            SongRegistry.getInstance().remove(song);
+            songTreeNew.delete(song);
+            searchIndex.remove(song);
+            SongMetadataCache.getInstance().remove(song.getFilePath());
+            refreshSearch();
+        });
+
+        return new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = songList.locationToIndex(e.getPoint());
+                if (index < 0 || !songList.getCellBounds(index, index).contains(e.getPoint())) return;
+                Song song = songListModel.getElementAt(index);
+
+                if (SongCellRenderer.isMenuClick(songList, e.getX())) {
+                    // Show popup on click
+                    popupSong[0] = song;
+                    Rectangle bounds = songList.getCellBounds(index, index);
+                    popupMenu.show(songList, songList.getWidth() - SongCellRenderer.MENU_WIDTH, bounds.y + bounds.height);
+                } else if (e.getClickCount() == 2) {
                     // Double click = play song
-                    long currentTime = System.currentTimeMillis();
-                    if (currentTime - lastClickTime < 400) {  // Double click threshold
-                        musicPlayer.loadSong(song);
-                        musicPlayerGUI.updateSongTitleAndArtist(song);
-                        musicPlayerGUI.updatePlaybackSlider(song);
-                        musicPlayerGUI.updateCoverImage(song);
-                        musicPlayerGUI.enablePauseButtonDisablePlayButton();
-                        updateNowPlayingSong(song);
-                    } else {
-                        // Single click = select and highlight
-                        if (selectedPanel != null) {
-                            selectedPanel.setBackground(Color.WHITE);  // Deselect previous
-                        }
-                        songPanel.setBackground(new Color(220, 220, 255));  // Light blue highlight
-                        selectedPanel = songPanel;
-                    }
-                    lastClickTime = currentTime;
+                    musicPlayer.loadSong(song);
+                    musicPlayerGUI.updateSongTitleAndArtist(song);
+                    musicPlayerGUI.updatePlaybackSlider(song);
+                    musicPlayerGUI.updateCoverImage(song);
+                    musicPlayerGUI.enablePauseButtonDisablePlayButton();
+                    updateNowPlayingSong(song);
                 }
-            });
-
-            // Image
-            JLabel imageLabel = new JLabel();
-            BufferedImage cover = song.getCoverImage();
-            if (cover != null) {
-                imageLabel.setIcon(new ImageIcon(cover.getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
-            } else {
-                imageLabel.setIcon(new ImageIcon(new ImageIcon("src/assets/record.png").getImage().getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
+                // Single click = select and highlight, handled by the list selection
             }
-            imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
-            songPanel.add(imageLabel, BorderLayout.WEST);
-
-            // Title + Artist
-            JPanel infoPanel = new JPanel();
-            infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-            infoPanel.setOpaque(false);  // Don't override panel bg
-
-            JLabel titleLabel = new JLabel(song.getSongTitle());
-            titleLabel.setFont(new Font("Dialog", Font.BOLD, 16));
-
-            JLabel artistLabel = new JLabel(song.getSongArtist());
-            artistLabel.setFont(new Font("Dialog", Font.PLAIN, 12));
-            artistLabel.setForeground(Color.GRAY);
-
-            infoPanel.add(titleLabel);
-            infoPanel.add(artistLabel);
-            songPanel.add(infoPanel, BorderLayout.CENTER);
-
-
-            // 3-dot menu button
-            JButton menuButton = new JButton("⋮");
-            menuButton.setFont(new Font("Dialog", Font.BOLD, 16));
-            menuButton.setFocusPainted(false);
-            menuButton.setBorderPainted(false);
-            menuButton.setContentAreaFilled(false);
-            menuButton.setOpaque(false);
-            menuButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-
-            // Popup menu
-            JPopupMenu popupMenu = new JPopupMenu();
-
-            JMenuItem queueItem = new JMenuItem("Queue");
-            queueItem.addActionListener(e -> {
-                musicPlayer.addToQueue(song);
-                if (queueViewerWindow != null && queueViewerWindow.isDisplayable()) {
-                    queueViewerWindow.updateQueueUI(musicPlayer.getQueue());
-                }
-            });
-            JMenuItem playlistItem = new JMenuItem("Add to Playlist");
-            JMenuItem removeItem = new JMenuItem("Remove");
-
-            popupMenu.add(queueItem);
-            popupMenu.add(playlistItem);
-            popupMenu.add(removeItem);
-
-            // remove
-            removeItem.addActionListener(e -> {
-                File songFile = new File(song.getFilePath());
-                if (songFile.exists()) songFile.delete();
-
-                allSongs.remove(song);
-                displayedSongs.remove(song);
-                songMap.remove(song.getSongTitle());
-                songTreeNew.delete(song);
-                renderSongList();
-            });
-
-            // Show popup on click
-            menuButton.addActionListener(e -> popupMenu.show(menuButton, 0, menuButton.getHeight()));
-
-            songPanel.add(menuButton, BorderLayout.EAST);
-
-            songListPanel.add(songPanel);
-        }
-
-        songListPanel.revalidate();
-        songListPanel.repaint();
+        };
     }
 
     private void updateNowPlayingSong(Song song){
@@ -422,17 +466,79 @@ public class MusicLibraryWindow extends JFrame {
 //    }
 
     private void performClosestSearch(){
+        typeAheadTimer.stop();
         String keyword = searchBar.getText();
-        displayedSongs.clear();
+        if (keyword.isEmpty()) {
+            cancelSearch();
+            displayedSongs.clear();
+            showAllSongs();
+        } else {
+            startSearch(cancelled -> searchIndex.search(keyword, 3, cancelled));
+        }
+    }
 
+    // Called on every pause in typing. Titles starting with the text are a range of the sorted
+    // library, shown straight from the tree; only when there is none the fuzzy matches are
+    // searched in the background. Either way the cost follows the results, not the library
+    private void performTypeAheadSearch() {
+        String keyword = searchBar.getText();
+        cancelSearch();
         if (keyword.isEmpty()) {
-            displayedSongs.addAll(allSongs);
+            displayedSongs.clear();
+            showAllSongs();
+            return;
+        }
+
+        // "artist:..." and the like only go through the index
+        List<Song> prefixMatches = SongSearchIndex.hasFieldQualifier(keyword) ? List.of() : songTreeNew.prefixRange(keyword);
+        if (!prefixMatches.isEmpty()) {
+            displayedSongs.clear();
+            songListModel.setSongs(prefixMatches);
         } else {
-            ArrayList<Song> matches = songTreeNew.searchClosestSongs(keyword, 3);
-            displayedSongs.addAll(matches);
+            startSearch(cancelled -> searchIndex.searchAsYouType(keyword, TYPE_AHEAD_RESULTS, cancelled));
         }
-        renderSongList();
+    }
+
+    // Show the results again after the library changed
+    private void refreshSearch() {
+        if (searchBar.getText().isEmpty()) {
+            showAllSongs();
+        } else if (songListModel.getSongs() == displayedSongs) {
+            songListModel.refresh();
+        } else {
+            // A prefix range is only valid until the tree changes
+            performTypeAheadSearch();
+        }
+    }
 
+    private void cancelSearch() {
+        if (searchWorker != null) searchWorker.cancel(false);
+        searchWorker = null;
+    }
+
+    // Score off the EDT, only the latest query gets to show its results
+    private void startSearch(Function<BooleanSupplier, ArrayList<Song>> search) {
+        cancelSearch();
+        searchWorker = new SwingWorker<>() {
+            @Override
+            protected ArrayList<Song> doInBackground() {
+                return search.apply(this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || searchWorker != this) return;
+                try {
+                    ArrayList<Song> matches = get();
+                    displayedSongs.clear();
+                    displayedSongs.addAll(matches);
+                    renderSongList();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        searchWorker.execute();
     }
 
     private void addSongToLibrary() {
@@ -453,24 +559,25 @@ public class MusicLibraryWindow extends JFrame {
                 return;
             }
 
-            // Add song to map and list
-            Song newSong = new Song(destination.getAbsolutePath());
-            if (!songMap.containsKey(newSong.getSongTitle())) {
-                allSongs.add(newSong);
-                displayedSongs.add(newSong);
-                songMap.put(newSong.getSongTitle(), newSong.getFilePath());
+            // Add song to the registry and list, unless that file is already in the library
+            SongRegistry registry = SongRegistry.getInstance();
+            boolean known = registry.lookup(destination.getAbsolutePath()) != null;
+            Song newSong = registry.get(destination.getAbsolutePath());
+            if (!known) {
+                if (songListModel.getSongs() == displayedSongs) displayedSongs.add(newSong);
                 songTreeNew.insert(newSong);
+                searchIndex.add(newSong);
             }
+            SongMetadataCache.getInstance().save();
 
-            renderSongList();
+            refreshSearch();
         }
     }
 
     public void showQueueViewer() {
+        // An open window already follows the queue by itself
         if (queueViewerWindow == null || !queueViewerWindow.isDisplayable()) {
             queueViewerWindow = new QueueViewerWindow(musicPlayer);
-        } else {
-            queueViewerWindow.updateQueueUI(musicPlayer.getQueue());
         }
         queueViewerWindow.setVisible(true);
     }
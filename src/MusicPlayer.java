@@ -1,404 +1,403 @@
-import javazoom.jl.player.advanced.AdvancedPlayer;
-import javazoom.jl.player.advanced.PlaybackEvent;
-import javazoom.jl.player.advanced.PlaybackListener;
-
-import java.io.*;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeListener;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class MusicPlayer extends PlaybackListener {
+// Public controls only queue a command, the playback engine thread runs them (handle) and is the
+// only thread that changes the current song, the playlist position or the pause state. Pausing
+// keeps the player open, so resuming doesn't reopen or re-decode anything. The only exceptions are
+// rows removed or shuffled in a playlist window, which move the position along with its song while
+// holding the playlist lock, the same lock the engine takes to step through the playlist.
+public final class MusicPlayer implements TrackPlayer.Listener, PlaybackEngine.Handler {
 
-    private static final Object playSignal = new Object();
+    // How often the slider and time label follow the playback position (~30 Hz)
+    private static final int CLOCK_UPDATE_INTERVAL = 33;
 
     public MusicPlayerGUI musicPlayerGUI;
 
-    private Queue<Song> songQueue = new LinkedList<>();
+    // Read by the engine thread, changed from the GUI
+    private final SongQueue songQueue = new SongQueue();
 
     // Song class to store song details
-    private Song currentSong;
+    private volatile Song currentSong;
     public Song getCurrentSong(){
         return currentSong;
     }
-    public void setCurrentSong(Song song){
-        currentSong = song;
-    }
 
-    // LinkedList of the Songs in a Playlist
-    private LinkedList<Song> playlist;
-    // Index to keep track of the current song in the linked list
-    private int currentPlaylistIndex;
-    public void setIndex(Song song){
-        int index = playlist.indexOf(song);
-        if (index != -1){
-            currentPlaylistIndex = index - 1;
-        }
-    }
-
-    public void setIndex(int index){
-        if (index < playlist.size()){
-            currentPlaylistIndex = index;
-        }
-    }
+    // Songs of the Playlist, positions and lookups are O(1)
+    private volatile Playlist playlist;
+    // Index to keep track of the current song in the playlist
+    private volatile int currentPlaylistIndex;
 
     public int getIndex(){
         return currentPlaylistIndex;
     }
 
-    public int getIndex(Song song){
-        return playlist.indexOf(song);
-    }
-
-    // AdvancedPlayer obj to handle music
-    private AdvancedPlayer advancedPlayer;
-
-    // Play/pause indicator
-    private volatile boolean isPaused;
-
-    // boolean flag used to tell when the song has finished
-    private volatile boolean songFinished;
-
-    private volatile boolean pressedNext, pressedPrev;
-
-    // Current frame
-    private int currentFrame;
-    public void setCurrentFrame(int frame){
-        currentFrame = frame;
-    }
-
-    // Track time passed
-    private int currentTimeInMilli;
-    public void setCurrentTimeInMilli(int timeInMilli){
-        currentTimeInMilli = timeInMilli;
-    }
+    // Single thread that decodes the current song and runs the control commands
+    private final PlaybackEngine engine;
 
-    public void resetVariable(){
-        isPaused = false;
-        songFinished = false;
-        pressedNext = false;
-        pressedPrev = false;
+    // Gapless mode: the next song is opened ahead of time and played on the same audio line
+    private volatile boolean gapless = true;
+    public void setGapless(boolean gapless){
+        this.gapless = gapless;
     }
 
-    private void resetCurrentSong(){
-        if(!songFinished)
-            stopSong();
-
-        // reset frame
-        currentFrame = 0;
+    // Opens and pre-decodes the upcoming song in the background
+    private final ExecutorService nextSongLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "next-song-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-        // reset current time in milli
-        currentTimeInMilli = 0;
+    // Publishes the playback position to the GUI on the EDT while a song is playing
+    private final Timer playbackClock;
 
-        musicPlayerGUI.updateGUI(currentSong);
-        musicPlayerGUI.setPlaybackSliderValue(0);
-        musicPlayerGUI.updatePlaybackSlider(currentSong);
-        musicPlayerGUI.enablePauseButtonDisablePlayButton();
-        resetVariable();
-    }
+    // Song time at which the current player started, the device position is added on top
+    private volatile int currentTimeInMilli;
 
     // Constructor
     public MusicPlayer(MusicPlayerGUI musicPlayerGUI){
         this.musicPlayerGUI = musicPlayerGUI;
-    }
 
-    public void loadSong(Song song){
-        currentSong = song;
-        playlist = null;
-
-        if (!songFinished){
-            stopSong();
-        }
+        playbackClock = new Timer(CLOCK_UPDATE_INTERVAL, e -> updatePlaybackPosition());
+        playbackClock.setCoalesce(true);
 
+        engine = new PlaybackEngine(this);
+    }
 
-        // Play song
-        if (currentSong != null){
-            // Reset values
-            resetCurrentSong();
+    // Controls, safe to call from any thread
 
-            playCurrentSong();
+    public void loadSong(Song song){
+        if (song != null) engine.post(PlaybackEngine.Command.PLAY, song);
+    }
 
-        }
+    // Resume the paused song, or play the current song from the start
+    public void playCurrentSong(){
+        engine.post(PlaybackEngine.Command.RESUME);
+    }
 
+    public void pauseSong(){
+        engine.post(PlaybackEngine.Command.PAUSE);
     }
 
-    public boolean loadPlaylist(File playlistFile){
-        playlist = new LinkedList<>();
-        HashMap<String, String> songMap = MusicLibraryWindow.songMap;
-        // store the paths from the text file into the playlist array list
-        try{
-            FileReader fileReader = new FileReader(playlistFile);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
+    // Play the current song from this frame
+    public void seek(int frame){
+        engine.post(PlaybackEngine.Command.SEEK, frame);
+    }
 
-            // reach each line from the text file and store the text into the songPath variable
-            String songName;
+    // Play this playlist from this position on, after the songs already queued, like nextSong().
+    // song is the row that was clicked, it is looked up again if the playlist changed meanwhile
+    public void playFromPlaylist(Playlist songs, int index, Song song){
+        engine.post(PlaybackEngine.Command.PLAY_AT, song, songs, index);
+    }
 
-            while((songName = bufferedReader.readLine()) != null){
-                // create song object based on song path
-                if (songMap.containsKey(songName)){
-                    Song song = new Song(songMap.get(songName));
-                    // add to playlist linked list
-                    playlist.add(song);
-                }
-            }
+    public void nextSong(){
+        engine.post(PlaybackEngine.Command.NEXT);
+    }
 
-            return true;
-        }catch(Exception e){
-            e.printStackTrace();
-            return false;
-        }
+    public void prevSong(){
+        engine.post(PlaybackEngine.Command.PREV);
+    }
 
-//        if(!playlist.isEmpty()){
-//            // update current song to the first song in the playlist
-//            currentSong = playlist.getFirst();
-//            resetCurrentSong();
-//            // start song
-//            playCurrentSong();
-//        }
+    public void stopSong(){
+        engine.post(PlaybackEngine.Command.STOP);
     }
 
-    public void pauseSong(){
-        if (advancedPlayer!=null){
-            isPaused = true;
-            stopSong();
-        }
+    // Position in the song, based on the audio actually played by the output line
+    public int getPlaybackPositionInMilli(){
+        TrackPlayer player = engine.getPlayer();
+        // Negative right after a gapless switch, while the line still plays the previous song
+        return Math.max(0, currentTimeInMilli + (player != null ? player.getPosition() : 0));
     }
 
-    public void stopSong(){
-        if (advancedPlayer!=null){
-            advancedPlayer.stop();
-            advancedPlayer.close();
-            advancedPlayer = null;
+    // Command handling, on the engine thread
+
+    @Override
+    public void handle(PlaybackEngine.Command command, Song song, Playlist songs, int frame){
+        switch (command) {
+            case PLAY -> {
+                // A song picked from the library is played on its own
+                playlist = null;
+                startNewSong(song);
+            }
+            case RESUME -> {
+                TrackPlayer player = engine.getPlayer();
+                if (player != null && player.isPaused()) {
+                    // Everything is still open, the line simply starts again
+                    player.resume();
+                    SwingUtilities.invokeLater(playbackClock::start);
+                } else if (player == null && currentSong != null) {
+                    startPlayer(0);
+                }
+            }
+            case PAUSE -> {
+                TrackPlayer player = engine.getPlayer();
+                if (player != null && !player.isPaused()) {
+                    // The engine stops decoding, the line keeps its position and buffered audio
+                    player.pause();
+                    SwingUtilities.invokeLater(playbackClock::stop);
+                }
+            }
+            case SEEK -> {
+                if (currentSong != null) startPlayer(frame);
+            }
+            case NEXT -> playNext();
+            case PREV -> playPrevious();
+            case STOP -> stopPlayer();
+            case PLAYLIST -> {
+                playlist = songs;
+                currentPlaylistIndex = -1;
+            }
+            case PLAY_AT -> playAt(songs, frame, song);
         }
     }
 
-    public void nextSong(){
+    private void playNext(){
         // Play all the song in the queue first, then the song in the playlists
-        if (!songQueue.isEmpty()){
-            pressedNext = true;
-            currentSong = songQueue.poll();
-            resetCurrentSong();
-            playCurrentSong();
+        Song queued = songQueue.poll();
+        if (queued != null){
+            startNewSong(queued);
             return;
         }
 
         // no need to go to the next song if there is no playlist
-        if(playlist == null) return;
-
-        // check to see if we have reached the end of the playlist, if so then don't do anything
-        if(currentPlaylistIndex + 1 > playlist.size() - 1) return;
-
-        pressedNext = true;
-
-        // stop the song if possible
-        if(!songFinished)
-            stopSong();
-
-        // increase current playlist index
-        currentPlaylistIndex++;
-
-        // update current song
-        currentSong = playlist.get(currentPlaylistIndex);
-        resetCurrentSong();
+        Playlist songs = playlist;
+        if(songs == null) return;
+
+        // Locked so a row removed from the playlist window doesn't shift the songs in between
+        Song next;
+        synchronized (songs) {
+            // check to see if we have reached the end of the playlist, if so then don't do anything
+            if(currentPlaylistIndex + 1 > songs.size() - 1) return;
+
+            // increase current playlist index
+            currentPlaylistIndex++;
+            next = songs.get(currentPlaylistIndex);
+        }
 
         // play the song
-        playCurrentSong();
+        startNewSong(next);
+    }
 
+    private void playAt(Playlist songs, int index, Song song){
+        synchronized (songs) {
+            if (song != null && (index >= songs.size() || songs.get(index) != song)) {
+                index = songs.indexOf(song);
+                if (index == -1) return;
+            }
+            playlist = songs;
+            // playNext steps onto the song at index, unless a queued song comes first
+            currentPlaylistIndex = index - 1;
+        }
+        playNext();
     }
 
-    public void prevSong(){
+    private void playPrevious(){
         // no need to go to the next song if there is no playlist
-        if(playlist == null) return;
+        Playlist songs = playlist;
+        if(songs == null) return;
 
-        // check to see if we can go to the previous song
-        if(currentPlaylistIndex - 1 < 0) return;
+        Song previous;
+        synchronized (songs) {
+            // check to see if we can go to the previous song
+            if(currentPlaylistIndex - 1 < 0) return;
 
-        pressedPrev = true;
+            // decrease current playlist index
+            currentPlaylistIndex--;
+            previous = songs.get(currentPlaylistIndex);
+        }
 
-        // stop the song if possible
-        if(!songFinished)
-            stopSong();
+        // play the song
+        startNewSong(previous);
+    }
 
-        // decrease current playlist index
-        currentPlaylistIndex--;
+    // Reset the GUI for a new song and play it from the start
+    private void startNewSong(Song song){
+        currentSong = song;
 
-        // update current song
-        currentSong = playlist.get(currentPlaylistIndex);
-        resetCurrentSong();
-        resetVariable();
+        SwingUtilities.invokeLater(() -> {
+            musicPlayerGUI.updateGUI(song);
+            musicPlayerGUI.setPlaybackSliderValue(0);
+            musicPlayerGUI.updatePlaybackSlider(song);
+            musicPlayerGUI.enablePauseButtonDisablePlayButton();
+        });
 
-        // play the song
-        playCurrentSong();
+        startPlayer(0);
     }
 
-    public void playCurrentSong(){
-
-        if (currentSong == null){return;}
+    private void startPlayer(int startFrame){
+        stopPlayer();
 
         try {
-            // Read audio data
-            FileInputStream fileInputStream = new FileInputStream(currentSong.getFilePath());
-            BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream);
+            currentTimeInMilli = (startFrame == 0) ? 0
+                    : (int) (startFrame / currentSong.getFrameRatePerMilliseconds());
 
-            // Create new advancedPlayer
-            advancedPlayer = new AdvancedPlayer(bufferedInputStream);
-            advancedPlayer.setPlayBackListener(this);
-
-            // Play
-            startMusicThread();
+            // Create new player, seeking jumps straight to the frame through the song's seek index
+            engine.play(new TrackPlayer(currentSong, startFrame, this));
 
             // Start playback slider
-            startPlaybackSliderThread();
+            SwingUtilities.invokeLater(playbackClock::start);
+
+            prepareUpcomingSong();
+
+            // Index the song while it plays so the first seek doesn't have to
+            Song song = currentSong;
+            nextSongLoader.execute(song::getSeekIndex);
 
         } catch (Exception e){
             e.printStackTrace();
         }
-
     }
 
-    // Create a thread that handle playing the music
-    private void startMusicThread(){
+    private void stopPlayer(){
+        SwingUtilities.invokeLater(playbackClock::stop);
+        engine.stop();
+    }
 
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (isPaused){
-                        synchronized (playSignal){
-                            isPaused = false;
-                            playSignal.notify();
-                        }
+    // Start decoding the song that comes next so the switch is gapless
+    private void prepareUpcomingSong(){
+        TrackPlayer player = engine.getPlayer();
+        Song upcoming = upcomingSong();
+        if (player != null && upcoming != null) {
+            nextSongLoader.execute(() -> player.prepareNext(upcoming));
+        }
+    }
 
-                        // Resume from last frame
-                        advancedPlayer.play(currentFrame, Integer.MAX_VALUE);
-                    }else{
-                        // Play Music
-                        advancedPlayer.play();
-                    }
+    // Queue first, then the playlist, same order as nextSong()
+    @Override
+    public Song upcomingSong(){
+        if (!gapless) return null;
+        Song queued = songQueue.peek();
+        if (queued != null) return queued;
+        Playlist songs = playlist;
+        if (songs == null) return null;
+
+        // Locked like playNext, a row removed meanwhile would leave the index past the end
+        synchronized (songs) {
+            return (currentPlaylistIndex + 1 < songs.size()) ? songs.get(currentPlaylistIndex + 1) : null;
+        }
+    }
 
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+    // Called on the engine thread when the player moved on to the upcoming song by itself
+    @Override
+    public void trackChanged(Song song, int startPositionInMilli){
+        Playlist songs = playlist;
+        if (song.equals(songQueue.peek())) {
+            songQueue.poll();
+        } else if (songs != null) {
+            synchronized (songs) {
+                currentPlaylistIndex++;
             }
-        }).start();
-    }
-
-    // Create a thread that will handle updating the slider
-    private void startPlaybackSliderThread(){
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                if (isPaused){
-                    try{
-                        synchronized (playSignal){
-                            playSignal.wait();
-                        }
-                    } catch (Exception e){
-                        e.printStackTrace();
-                    }
-                }
-
-                while(!isPaused && !songFinished && !pressedNext && !pressedPrev){
-                    try {
-                        currentTimeInMilli++;
+        }
 
-                        // Calculate frame
-                        int calculatedFrame = (int) ((double) currentTimeInMilli * 2.08 * currentSong.getFrameRatePerMilliseconds());
+        currentSong = song;
+        currentTimeInMilli = -startPositionInMilli;
 
-                        // Update GUI
-                        musicPlayerGUI.setPlaybackSliderValue(calculatedFrame);
-                        musicPlayerGUI.updateTimeLabel(currentTimeInMilli);
-                        Thread.sleep(1);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }).start();
+        SwingUtilities.invokeLater(() -> musicPlayerGUI.updateGUI(song));
+        prepareUpcomingSong();
     }
 
-    @Override
-    public void playbackStarted(PlaybackEvent evt) {
-        System.out.println("Playback Started");
-        songFinished = false;
-        pressedNext = false;
-        pressedPrev = false;
+    // Runs on the EDT at the clock rate, moves the slider and time label to the played position
+    private void updatePlaybackPosition(){
+        Song song = currentSong;
+        if (engine.getPlayer() == null || song == null) return;
+
+        int positionInMilli = getPlaybackPositionInMilli();
+
+        // Calculate frame
+        int calculatedFrame = (int) (positionInMilli * song.getFrameRatePerMilliseconds());
+
+        // Update GUI
+        musicPlayerGUI.setPlaybackSliderValue(calculatedFrame);
+        musicPlayerGUI.updateTimeLabel(positionInMilli);
     }
 
+    // Called on the engine thread when the last song ended by itself
     @Override
-    public void playbackFinished(PlaybackEvent evt) {
-        System.out.println("Playback Finished");
-
-        if (isPaused){
-            currentFrame += (int) ((double) evt.getFrame() * currentSong.getFrameRatePerMilliseconds());
-        } else{
-            if(pressedNext || pressedPrev) return;
-
-            songFinished = true;
-
-            // Check if we need to play the next song in queue
-//            if (!songQueue.isEmpty()) {
-//                currentSong = songQueue.poll();
-//                playCurrentSong();
-//            } else if (playlist != null && currentPlaylistIndex + 1 < playlist.size()) {
-//                currentPlaylistIndex++;
-//                currentSong = playlist.get(currentPlaylistIndex);
-//                playCurrentSong();
-//            }
-
-            if (!songQueue.isEmpty()) {
-                currentSong = songQueue.poll();
-                musicPlayerGUI.enablePauseButtonDisablePlayButton();
-                resetCurrentSong();
-                playCurrentSong();
-
-
-
-
-            } else if (playlist == null) {
-                return;
-            } else if (currentPlaylistIndex == playlist.size() - 1) {
-                // update gui
-                musicPlayerGUI.enablePlayButtonDisablePauseButton();
-            } else {
-                nextSong();
-            }
+    public void playbackFinished() {
+        SwingUtilities.invokeLater(playbackClock::stop);
 
-//            if(playlist == null){
-//                // update gui
-//                musicPlayerGUI.enablePlayButtonDisablePauseButton();
-//            }else{
-//                // last song in the playlist
-//                if(currentPlaylistIndex == playlist.size() - 1){
-//                    // update gui
-//                    musicPlayerGUI.enablePlayButtonDisablePauseButton();
-//                }else{
-//                    // go to the next song in the playlist
-//                    nextSong();
-//                }
-//            }
+        // Check if we need to play the next song in queue
+        if (!songQueue.isEmpty()) {
+            playNext();
+        } else if (playlist == null) {
+            return;
+        } else if (currentPlaylistIndex == playlist.size() - 1) {
+            // update gui
+            SwingUtilities.invokeLater(musicPlayerGUI::enablePlayButtonDisablePauseButton);
+        } else {
+            playNext();
         }
-
     }
 
-    public LinkedList<Song> getPlaylist() {
+    public Playlist getPlaylist() {
         return playlist;
     }
 
+    // Play from this playlist from now on, e.g. once a PlaylistLoader finished
+    public void setPlaylist(Playlist songs) {
+        engine.post(PlaybackEngine.Command.PLAYLIST, null, songs, 0);
+    }
+
+    // Shuffle a playlist window. If it is the playlist being played, the position follows the current
+    // song to its new place, in the same locked step so the engine never sees one without the other
+    public void shufflePlaylist(Playlist songs) {
+        synchronized (songs) {
+            Collections.shuffle(songs);
+            if (songs == playlist) {
+                int index = songs.indexOf(currentSong);
+                if (index != -1) currentPlaylistIndex = index;
+            }
+        }
+    }
+
+    // Remove a row of a playlist window. If it is the playlist being played and the row was before
+    // the current song, or was the current song, the position moves back with the songs after it
+    // so the next song stays the same
+    public void removeFromPlaylist(Playlist songs, int index) {
+        synchronized (songs) {
+            songs.remove(index);
+            if (songs == playlist && index <= currentPlaylistIndex) {
+                currentPlaylistIndex--;
+            }
+        }
+    }
+
     public void addToQueue(Song song) {
         songQueue.add(song);
     }
 
+    // Queue the song so it plays right after the current one
+    public void queueNext(Song song) {
+        songQueue.add(0, song);
+    }
+
     public void removeFromQueue(Song song) {
         songQueue.remove(song);
     }
 
+    public void removeFromQueue(int index) {
+        songQueue.remove(index);
+    }
+
+    // for viewing in UI, the same unmodifiable list until the queue changes
     public List<Song> getQueue() {
-        return new ArrayList<>(songQueue); // for viewing in UI
+        return songQueue.snapshot();
     }
 
     public void moveSongInQueue(int fromIndex, int toIndex) {
-        List<Song> tempList = new ArrayList<>(songQueue);
-        Song song = tempList.remove(fromIndex);
-        tempList.add(toIndex, song);
-        songQueue = new LinkedList<>(tempList);
+        songQueue.move(fromIndex, toIndex);
+    }
+
+    // Called on the EDT whenever songs are queued, played from the queue, moved or removed
+    public void addQueueListener(ChangeListener listener) {
+        songQueue.addChangeListener(listener);
+    }
+
+    public void removeQueueListener(ChangeListener listener) {
+        songQueue.removeChangeListener(listener);
     }
 
 }
\ No newline at end of file
@@ -19,8 +19,6 @@ public class MusicPlayerGUI extends JFrame {
 
     public MusicPlayer musicPlayer;
 
-    private MusicLibraryWindow musicLibraryWindow;
-
     private Song currentSong;
 
     // Allow file explorer
@@ -52,7 +50,6 @@ public class MusicPlayerGUI extends JFrame {
         getContentPane().setBackground(FRAME_COLOR);
 
         musicPlayer = new MusicPlayer(this);
-        musicLibraryWindow = new MusicLibraryWindow(this);
 
         jFileChooser = new JFileChooser();
 
@@ -111,15 +108,8 @@ public class MusicPlayerGUI extends JFrame {
                 // Get frame value to play
                 int frame =  source.getValue();
 
-                // Update current frame
-                musicPlayer.setCurrentFrame(frame);
-
-                // Update current time
-                int miliSecond = (int) (frame / (2.08 * musicPlayer.getCurrentSong().getFrameRatePerMilliseconds()));
-                musicPlayer.setCurrentTimeInMilli(miliSecond);
-
-                // Resume song
-                musicPlayer.playCurrentSong();
+                // Resume song from the selected frame
+                musicPlayer.seek(frame);
 
                 // Toggle play pause button
                 enablePauseButtonDisablePlayButton();
@@ -159,8 +149,8 @@ public class MusicPlayerGUI extends JFrame {
                 File selectedFile = jFileChooser.getSelectedFile();
 
                 if (result == JFileChooser.APPROVE_OPTION && selectedFile!=null){
-                    // Create a song obj
-                    Song song = new Song(selectedFile.getPath());
+                    // Get the song obj, parsed only if the file was never loaded
+                    Song song = SongRegistry.getInstance().get(selectedFile.getPath());
                     currentSong = song;
 
                     // Update playback slider
@@ -207,7 +197,7 @@ public class MusicPlayerGUI extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 JFileChooser jFileChooser = new JFileChooser();
-                jFileChooser.setFileFilter(new FileNameExtensionFilter("playlist", "txt"));
+                jFileChooser.setFileFilter(new FileNameExtensionFilter("playlist", "txt", PlaylistFile.EXTENSION));
                 jFileChooser.setCurrentDirectory(new File("src/playlist"));
 
                 int result = jFileChooser.showOpenDialog(MusicPlayerGUI.this);
@@ -217,8 +207,14 @@ public class MusicPlayerGUI extends JFrame {
                     // stop the music
                     musicPlayer.stopSong();
 
-                    // load playlist
-                    musicPlayer.loadPlaylist(selectedFile);
+                    // load playlist, read in the background
+                    PlaylistLoader[] loader = new PlaylistLoader[1];
+                    loader[0] = new PlaylistLoader(selectedFile, songs -> {}, songs -> {
+                        if (songs == null) return;
+                        musicPlayer.setPlaylist(songs);
+                        PlaylistLoader.showMissingSongs(MusicPlayerGUI.this, loader[0].getMissingSongs());
+                    }, () -> {});
+                    loader[0].execute();
                 }
             }
         });
@@ -307,7 +303,7 @@ public class MusicPlayerGUI extends JFrame {
 
     public void updatePlaybackSlider(Song song){
         // Update max count for slider
-        playbackSlider.setMaximum(song.getMp3File().getFrameCount());
+        playbackSlider.setMaximum(song.getFrameCount());
         // Create song length label
         Hashtable<Integer, JLabel> labelTable = new Hashtable<>();
 
@@ -322,7 +318,7 @@ public class MusicPlayerGUI extends JFrame {
         labelEnd.setForeground(TEXT_COLOR);
 
         labelTable.put(0, timeLabel);
-        labelTable.put(song.getMp3File().getFrameCount(), labelEnd);
+        labelTable.put(song.getFrameCount(), labelEnd);
 
         playbackSlider.setLabelTable(labelTable);
         playbackSlider.setPaintLabels(true);
@@ -333,7 +329,7 @@ public class MusicPlayerGUI extends JFrame {
         if (timeLabel == null) return;
 
         // Convert milliseconds to mm:ss
-        int seconds = (int) (currentTimeInMilli * 2.08) / 1000;
+        int seconds = currentTimeInMilli / 1000;
         int minutes = seconds / 60;
         seconds = seconds % 60;
         String timeString = String.format("%02d:%02d", minutes, seconds);
@@ -342,10 +338,9 @@ public class MusicPlayerGUI extends JFrame {
     }
 
     public void updateCoverImage(Song song){
-        BufferedImage cover = song.getCoverImage();
+        ImageIcon cover = CoverArtCache.getIcon(song, CoverArtCache.COVER_SIZE);
         if (cover != null) {
-            Image scaledImage = cover.getScaledInstance(225, 225, Image.SCALE_SMOOTH);
-            songImage.setIcon(new ImageIcon(scaledImage));
+            songImage.setIcon(cover);
         }
         else{
             ImageIcon image = loadImage("src/assets/record.png");
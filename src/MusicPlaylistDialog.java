@@ -3,20 +3,19 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.util.ArrayList;
+import java.util.List;
 
 public class MusicPlaylistDialog extends JDialog {
     private MusicPlayerGUI musicPlayerGUI;
 
-    // store all of the song's name to be written to a txt file (when we load a playlist)
-    private ArrayList<String> songNames;
+    // store all of the songs to be written to the playlist file (when we load a playlist)
+    private ArrayList<Song> songs;
 
     public MusicPlaylistDialog(MusicPlayerGUI musicPlayerGUI){
         this.musicPlayerGUI = musicPlayerGUI;
-        songNames = new ArrayList<>();
+        songs = new ArrayList<>();
 
 
         // configure dialog
@@ -54,7 +53,7 @@ public class MusicPlaylistDialog extends JDialog {
                 File selectedFile = jFileChooser.getSelectedFile();
                 if(result == JFileChooser.APPROVE_OPTION && selectedFile != null){
                     String name = selectedFile.getName().replace(".mp3", "");
-                    Song song = new Song(selectedFile.getPath());
+                    Song song = SongRegistry.getInstance().get(selectedFile.getPath());
                     JLabel filePathLabel = new JLabel(name);
                     filePathLabel.setFont(new Font("Dialog", Font.BOLD, 15));
                     filePathLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -67,7 +66,7 @@ public class MusicPlaylistDialog extends JDialog {
 
                     // add to the list
 
-                    songNames.add(song.getSongTitle());
+                    songs.add(song);
 
                     // add to container
                     songContainer.add(filePathLabel);
@@ -95,25 +94,13 @@ public class MusicPlaylistDialog extends JDialog {
                         // we use getSelectedFile() to get reference to the file that we are about to save
                         File selectedFile = jFileChooser.getSelectedFile();
 
-                        // convert to .txt file if not done so already
-                        // this will check to see if the file does not have the ".txt" file extension
-                        if(!selectedFile.getName().substring(selectedFile.getName().length() - 4).equalsIgnoreCase(".txt")){
-                            selectedFile = new File(selectedFile.getAbsoluteFile() + ".txt");
+                        // add the playlist file extension if not done so already
+                        if(!PlaylistFile.isPlaylistFile(selectedFile)){
+                            selectedFile = new File(selectedFile.getAbsoluteFile() + "." + PlaylistFile.EXTENSION);
                         }
 
-                        // create the new file at the destinated directory
-                        selectedFile.createNewFile();
-
-                        // now we will write all of the song paths into this file
-                        FileWriter fileWriter = new FileWriter(selectedFile);
-                        BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
-
-                        // iterate through our song paths list and write each string into the file
-                        // each song will be written in their own row
-                        for(String songPath : songNames){
-                            bufferedWriter.write(songPath + "\n");
-                        }
-                        bufferedWriter.close();
+                        // write all of the songs into this file, each one as its own record
+                        PlaylistFile.write(selectedFile, songs);
 
                         // display success dialog
                         JOptionPane.showMessageDialog(MusicPlaylistDialog.this, "Successfully Created Playlist!");
@@ -128,4 +115,26 @@ public class MusicPlaylistDialog extends JDialog {
         });
         add(savePlaylistButton);
     }
+
+    // "Add to Playlist" of a song menu: append the song to a playlist file the user picks
+    public static void addToPlaylist(Component parent, Song song){
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setFileFilter(new FileNameExtensionFilter("playlist", PlaylistFile.EXTENSION));
+        jFileChooser.setCurrentDirectory(new File("src/playlist"));
+        int result = jFileChooser.showOpenDialog(parent);
+
+        File selectedFile = jFileChooser.getSelectedFile();
+        if(result != JFileChooser.APPROVE_OPTION || selectedFile == null) return;
+        if(!PlaylistFile.isPlaylistFile(selectedFile)){
+            selectedFile = new File(selectedFile.getAbsoluteFile() + "." + PlaylistFile.EXTENSION);
+        }
+
+        try{
+            PlaylistFile.append(selectedFile, List.of(song));
+        }catch(Exception exception){
+            exception.printStackTrace();
+            JOptionPane.showMessageDialog(parent,
+                    "Song cannot be added to the playlist.", "Warning", JOptionPane.WARNING_MESSAGE);
+        }
+    }
 }
@@ -0,0 +1,95 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// One long-lived thread that owns playback. Control commands from the GUI are queued and run in
+// order between two decoded frames, so no thread is created per play, seek or resume, and the
+// playback state is only ever changed by this thread.
+public class PlaybackEngine {
+
+    public enum Command { PLAY, PAUSE, RESUME, SEEK, NEXT, PREV, STOP, PLAYLIST, PLAY_AT }
+
+    // Runs the commands, always called on the engine thread. frame is the playlist position for
+    // PLAY_AT
+    public interface Handler {
+        void handle(Command command, Song song, Playlist playlist, int frame);
+    }
+
+    private record Request(Command command, Song song, Playlist playlist, int frame) {
+    }
+
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final Handler handler;
+
+    // Player being decoded, only replaced on the engine thread
+    private volatile TrackPlayer player;
+
+    public PlaybackEngine(Handler handler) {
+        this.handler = handler;
+        Thread thread = new Thread(this::run, "playback-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Queue a command, can be called from any thread
+    public void post(Command command) {
+        post(command, null, null, 0);
+    }
+
+    public void post(Command command, Song song) {
+        post(command, song, null, 0);
+    }
+
+    public void post(Command command, int frame) {
+        post(command, null, null, frame);
+    }
+
+    public void post(Command command, Song song, Playlist playlist, int frame) {
+        requests.add(new Request(command, song, playlist, frame));
+    }
+
+    // Player currently decoding, or null when nothing is playing
+    public TrackPlayer getPlayer() {
+        return player;
+    }
+
+    // Engine thread only: decode this player from now on, closing the previous one
+    public void play(TrackPlayer trackPlayer) {
+        stop();
+        player = trackPlayer;
+    }
+
+    // Engine thread only: close the current player
+    public void stop() {
+        TrackPlayer current = player;
+        player = null;
+        if (current != null) current.stop();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                // Block while idle or paused, otherwise only check for commands between frames
+                TrackPlayer current = player;
+                boolean playing = current != null && !current.isPaused();
+                Request request = playing ? requests.poll() : requests.take();
+
+                if (request != null) {
+                    // Dragging the slider queues many seeks, only the last one matters
+                    Request next = requests.peek();
+                    if (request.command == Command.SEEK && next != null && next.command == Command.SEEK) {
+                        continue;
+                    }
+                    handler.handle(request.command, request.song, request.playlist, request.frame);
+                } else if (!current.playFrame() && player == current) {
+                    // Finished, unless the end of playback already started another player
+                    player = null;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                // A failing command must not kill the engine
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// Songs of a playlist in play order, stored in an array so the player jumps to any position in
+// O(1). The position of every song is kept in a map: appending keeps it up to date, edits that
+// shift songs around only mark it stale and it is rebuilt once on the next lookup, so a burst of
+// removes or a shuffle costs one pass. A song can be in the playlist more than once, lookups give
+// its first position, like List.indexOf.
+// The player reads it on the engine thread while the playlist window edits it on the EDT, so
+// every method locks the playlist.
+public final class Playlist extends AbstractList<Song> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Song[] songs = new Song[INITIAL_CAPACITY];
+    private int size;
+
+    // First position of each song, only valid while positionsValid is set
+    private final Map<Song, Integer> positions = new HashMap<>();
+    private boolean positionsValid = true;
+
+    public Playlist() {
+    }
+
+    public Playlist(Collection<? extends Song> songs) {
+        addAll(songs);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Song get(int index) {
+        checkIndex(index, size);
+        return songs[index];
+    }
+
+    @Override
+    public synchronized Song set(int index, Song song) {
+        checkIndex(index, size);
+        Song previous = songs[index];
+        songs[index] = song;
+        positionsValid = false;
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean add(Song song) {
+        grow(size + 1);
+        songs[size] = song;
+        if (positionsValid) positions.putIfAbsent(song, size);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int index, Song song) {
+        checkIndex(index, size + 1);
+        if (index == size) {
+            add(song);
+            return;
+        }
+        grow(size + 1);
+        System.arraycopy(songs, index, songs, index + 1, size - index);
+        songs[index] = song;
+        size++;
+        modCount++;
+        positionsValid = false;
+    }
+
+    // One copy for the whole batch, used while a playlist file streams in
+    @Override
+    public synchronized boolean addAll(Collection<? extends Song> added) {
+        Object[] batch = added.toArray();
+        if (batch.length == 0) return false;
+        grow(size + batch.length);
+        for (Object song : batch) {
+            songs[size] = (Song) song;
+            if (positionsValid) positions.putIfAbsent((Song) song, size);
+            size++;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized Song remove(int index) {
+        checkIndex(index, size);
+        Song removed = songs[index];
+        System.arraycopy(songs, index + 1, songs, index, size - index - 1);
+        songs[--size] = null;
+        modCount++;
+        positionsValid = false;
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean remove(Object song) {
+        int index = indexOf(song);
+        if (index < 0) return false;
+        remove(index);
+        return true;
+    }
+
+    // Move the song at from so it ends up at position to, the songs in between shift by one
+    public synchronized void move(int from, int to) {
+        checkIndex(from, size);
+        checkIndex(to, size);
+        if (from == to) return;
+
+        Song song = songs[from];
+        if (from < to) {
+            System.arraycopy(songs, from + 1, songs, from, to - from);
+        } else {
+            System.arraycopy(songs, to, songs, to + 1, from - to);
+        }
+        songs[to] = song;
+        modCount++;
+        positionsValid = false;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(songs, 0, size, null);
+        size = 0;
+        modCount++;
+        positions.clear();
+        positionsValid = true;
+    }
+
+    @Override
+    public synchronized int indexOf(Object song) {
+        if (!positionsValid) {
+            positions.clear();
+            for (int i = 0; i < size; i++) {
+                positions.putIfAbsent(songs[i], i);
+            }
+            positionsValid = true;
+        }
+        Integer index = positions.get(song);
+        return (index != null) ? index : -1;
+    }
+
+    @Override
+    public boolean contains(Object song) {
+        return indexOf(song) >= 0;
+    }
+
+    private void grow(int capacity) {
+        if (capacity > songs.length) {
+            songs = Arrays.copyOf(songs, Math.max(capacity, songs.length + (songs.length >> 1)));
+        }
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Binary playlist file. Songs are stored by path, which stays the same when a title or tag changes
+// and tells apart songs with the same title, together with the title, artist and album they had
+// when they were added. Reading loads the file in one go and resolves every record with a registry
+// lookup, no tag is parsed; songs are only appended, so adding one to a long playlist writes one record.
+//
+// File layout (big endian): magic, version, then records until the end of the file:
+//   record length, path, title, artist, album, length in ms
+// Strings are stored as a 2 byte length followed by UTF-8 bytes. A record cut short by an
+// interrupted append is ignored. A newer version may only add fields at the end of a record, so its
+// files are still read, the extra fields are skipped by the record length; appending to them is
+// refused, it would write records without those fields.
+public class PlaylistFile {
+
+    public static final String EXTENSION = "jmpl";
+
+    private static final int MAGIC = 0x4A4D504C; // "JMPL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private PlaylistFile() {
+    }
+
+    public static boolean isPlaylistFile(File file) {
+        return file.getName().toLowerCase().endsWith("." + EXTENSION);
+    }
+
+    // Where a text playlist is converted to, "Road Trip.txt" becomes "Road Trip.jmpl"
+    public static File convertedFile(File textFile) {
+        String name = textFile.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(textFile.getAbsoluteFile().getParentFile(),
+                (dot > 0 ? name.substring(0, dot) : name) + "." + EXTENSION);
+    }
+
+    // Pass every song of the playlist to the sink, in order. Songs whose file is gone are looked
+    // up by their stored title and artist, so a renamed file is still found; the titles of those
+    // that can't be found go to missing
+    public static void read(File file, Consumer<Song> sink, Consumer<String> missing, BooleanSupplier cancelled) throws IOException {
+        SongRegistry registry = SongRegistry.getInstance();
+
+        // Read into the heap rather than mapped, a mapping would keep the file from being replaced
+        // on Windows until it is garbage collected
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() < VERSION) {
+            throw new IOException("not a playlist file: " + file);
+        }
+
+        while (buffer.remaining() >= 4 && !cancelled.getAsBoolean()) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) break;
+            int next = buffer.position() + length;
+
+            // Title and artist are only decoded when the path is not registered
+            Song song = registry.lookup(readString(buffer));
+            if (song == null) {
+                buffer.position(next - length);
+                String path = readString(buffer);
+                String title = readString(buffer);
+                song = resolve(registry, path, title, readString(buffer));
+                if (song == null) missing.accept(title);
+            }
+            buffer.position(next);
+
+            if (song != null) sink.accept(song);
+        }
+    }
+
+    // Replace the file with these songs
+    public static void write(File file, List<Song> songs) throws IOException {
+        File tempFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeRecords(out, songs);
+        }
+
+        // Replace the old playlist in one step so a crash never leaves a half written file
+        Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Add songs at the end of the playlist, creating it if needed. Only the new records are written
+    public static void append(File file, List<Song> songs) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            write(file, songs);
+            return;
+        }
+
+        // Don't append to something that isn't a playlist
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a playlist file: " + file);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16))) {
+            writeRecords(out, songs);
+        }
+    }
+
+    private static Song resolve(SongRegistry registry, String path, String title, String artist) {
+        Song song = registry.lookup(path);
+        if (song != null) return song;
+
+        // Not in the library yet, restored from the metadata cache when possible
+        if (new File(path).isFile()) return registry.get(path);
+
+        for (Song candidate : registry.getSongsByTitle(title)) {
+            if (Objects.equals(candidate.getSongArtist(), artist)) return candidate;
+        }
+        return null;
+    }
+
+    private static void writeRecords(DataOutputStream out, List<Song> songs) throws IOException {
+        // Each record is built first so its length can be written in front of it
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+
+        for (Song song : songs) {
+            bytes.reset();
+            writeString(record, song.getFilePath());
+            writeString(record, song.getSongTitle());
+            writeString(record, song.getSongArtist());
+            writeString(record, song.getSongAlbum());
+            record.writeLong(song.getLengthInMilliseconds());
+
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xffff);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+}
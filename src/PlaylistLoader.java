@@ -0,0 +1,160 @@
+import javax.swing.*;
+import java.awt.Component;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Reads a playlist file in the background and streams its songs back to the EDT in batches, so a
+// long playlist shows its first rows right away. Every row is resolved against the songs already
+// in the registry: no tag is parsed, and covers are only decoded for the rows that get painted.
+// Rows the library doesn't have are skipped and listed by getMissingSongs().
+public class PlaylistLoader extends SwingWorker<Playlist, Void> {
+
+    // Rows handed to the EDT at once
+    private static final int BATCH_SIZE = 256;
+    // Missing titles listed in the warning, the rest are only counted
+    private static final int MISSING_SONGS_SHOWN = 10;
+
+    private final File playlistFile;
+    private final Consumer<List<Song>> onSongsLoaded;
+    private final Consumer<Playlist> onFinished;
+    private final Runnable onCancelled;
+
+    // Library scan still registering songs, titles are only looked up once it is over
+    private Future<?> libraryScan;
+    // Rows that are not in the library, read on the EDT once the loader is done
+    private final List<String> missingSongs = new ArrayList<>();
+
+    // Exactly one of the callbacks runs at the end: onFinished with the whole playlist (null when
+    // the file could not be read), or onCancelled when the loader was cancelled
+    public PlaylistLoader(File playlistFile, Consumer<List<Song>> onSongsLoaded, Consumer<Playlist> onFinished,
+                          Runnable onCancelled) {
+        this.playlistFile = playlistFile;
+        this.onSongsLoaded = onSongsLoaded;
+        this.onFinished = onFinished;
+        this.onCancelled = onCancelled;
+    }
+
+    // Wait for this scan before resolving the titles of a text playlist
+    public void setLibraryScan(Future<?> libraryScan) {
+        this.libraryScan = libraryScan;
+    }
+
+    // Titles of the rows that were skipped because the library doesn't have them
+    public List<String> getMissingSongs() {
+        return missingSongs;
+    }
+
+    // The songs of the playlist file, batches are passed to the consumer as they fill up. A text
+    // playlist (one title per line) is converted to a PlaylistFile next to it once all of its
+    // titles are in the library, later loads read the converted file instead
+    private Playlist read(Consumer<List<Song>> batches) throws IOException, InterruptedException {
+        Playlist songs = new Playlist();
+        List<Song> batch = new ArrayList<>(BATCH_SIZE);
+        Consumer<Song> sink = song -> {
+            songs.add(song);
+            batch.add(song);
+            if (batch.size() == BATCH_SIZE) {
+                batches.accept(List.copyOf(batch));
+                batch.clear();
+            }
+        };
+
+        File convertedFile = PlaylistFile.convertedFile(playlistFile);
+        if (PlaylistFile.isPlaylistFile(playlistFile)) {
+            PlaylistFile.read(playlistFile, sink, missingSongs::add, this::isCancelled);
+        } else if (convertedFile.isFile() && convertedFile.lastModified() >= playlistFile.lastModified()) {
+            PlaylistFile.read(convertedFile, sink, missingSongs::add, this::isCancelled);
+        } else {
+            awaitLibraryScan();
+            readText(sink);
+            if (missingSongs.isEmpty() && !isCancelled()) {
+                try {
+                    PlaylistFile.write(convertedFile, songs);
+                } catch (IOException e) {
+                    // Not fatal, the text playlist is simply read again next time
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            batches.accept(List.copyOf(batch));
+        }
+        return songs;
+    }
+
+    // Titles are resolved through the registry, a song the scan hasn't reached yet would be missed
+    private void awaitLibraryScan() throws InterruptedException {
+        if (libraryScan == null) return;
+        try {
+            libraryScan.get();
+        } catch (CancellationException | ExecutionException e) {
+            // Scan stopped early, go with the songs it registered
+        }
+    }
+
+    private void readText(Consumer<Song> sink) throws IOException {
+        SongRegistry registry = SongRegistry.getInstance();
+
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(playlistFile))) {
+            String songName;
+            while ((songName = bufferedReader.readLine()) != null && !isCancelled()) {
+                if (songName.isBlank()) continue;
+
+                // the already loaded song with this title
+                Song song = registry.findByTitle(songName);
+                if (song != null) {
+                    sink.accept(song);
+                } else {
+                    missingSongs.add(songName);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Playlist doInBackground() throws Exception {
+        // invokeLater rather than publish(): batches then reach the EDT in order and before done()
+        return read(batch -> SwingUtilities.invokeLater(() -> {
+            if (!isCancelled()) onSongsLoaded.accept(batch);
+        }));
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            // A newer playlist replaced this one
+            onCancelled.run();
+            return;
+        }
+        try {
+            onFinished.accept(get());
+        } catch (Exception e) {
+            e.printStackTrace();
+            onFinished.accept(null);
+        }
+    }
+
+    // Warning listing the rows a loaded playlist had to skip, if there were any
+    public static void showMissingSongs(Component parent, List<String> missingSongs) {
+        if (missingSongs.isEmpty()) return;
+
+        StringBuilder message = new StringBuilder(missingSongs.size() + " songs of the playlist are not in the library:");
+        int shown = Math.min(missingSongs.size(), MISSING_SONGS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            message.append("\n").append(missingSongs.get(i));
+        }
+        if (shown < missingSongs.size()) {
+            message.append("\n...");
+        }
+        JOptionPane.showMessageDialog(parent, message.toString(), "Warning", JOptionPane.WARNING_MESSAGE);
+    }
+}
@@ -1,18 +1,24 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.List;
 
 public class PlaylistViewerWindow extends JFrame {
-    private JPanel songListPanel;
-    private JPanel selectedPanel = null;
+    // Rows shown by the list, a view on the playlist itself
+    private final SongListModel songListModel = new SongListModel();
+    private final JList<Song> songList;
+    private final Playlist playlist;
     private JPanel buttonPanel;
+    private JLabel songCountLabel;
     private JLabel nowPlayingText;
+    private boolean loading;
+    // Off while this isn't the playlist the player plays from
+    private boolean playable = true;
 
-    public PlaylistViewerWindow(String playlistName, LinkedList<Song> playlist, MusicPlayer musicPlayer, MusicPlayerGUI musicPlayerGUI) {
+    public PlaylistViewerWindow(String playlistName, Playlist playlist, MusicPlayer musicPlayer, MusicPlayerGUI musicPlayerGUI) {
+        this.playlist = playlist;
+        songListModel.setSongs(playlist);
         setTitle("Current Playlist - " + playlistName);
         setSize(500, 600);
         setLocationRelativeTo(null);
@@ -34,7 +40,7 @@ public class PlaylistViewerWindow extends JFrame {
         playlistNameLabel.setFont(new Font("Dialog", Font.BOLD, 16));
 
         // Song count (e.g., "5 Songs")
-        JLabel songCountLabel = new JLabel(playlist.size() + " Songs");
+        songCountLabel = new JLabel(playlist.size() + " Songs");
         songCountLabel.setFont(new Font("Dialog", Font.PLAIN, 14));
         songCountLabel.setForeground(Color.GRAY);
 
@@ -47,14 +53,12 @@ public class PlaylistViewerWindow extends JFrame {
         buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         JButton shuffleButton = new JButton("Shuffle");
         shuffleButton.addActionListener(e -> {
-            Collections.shuffle(playlist);
-            musicPlayer.setIndex(musicPlayer.getIndex(musicPlayer.getCurrentSong()));
-            renderSongPanels(playlist, musicPlayerGUI.musicPlayer, musicPlayerGUI);
+            musicPlayer.shufflePlaylist(playlist);
+            renderSongList();
         });
         JButton playButton = new JButton("▶");
         playButton.addActionListener(e -> {
-            musicPlayer.setIndex(-1);
-            musicPlayer.nextSong();
+            musicPlayer.playFromPlaylist(playlist, 0, null);
         });
 
         buttonPanel.add(shuffleButton);
@@ -64,16 +68,22 @@ public class PlaylistViewerWindow extends JFrame {
         topPanel.add(buttonPanel, BorderLayout.EAST);
         add(topPanel, BorderLayout.NORTH);
 
-        // --- Center: Song List Panel ---
-        songListPanel = new JPanel();
-        songListPanel.setLayout(new BoxLayout(songListPanel, BoxLayout.Y_AXIS));
-
-        JScrollPane scrollPane = new JScrollPane(songListPanel);
+        // --- Center: Song List ---
+        // Only the visible rows are painted, all through one shared renderer
+        songList = new JList<>(songListModel);
+        songList.setCellRenderer(new SongCellRenderer(true));
+        songList.setFixedCellHeight(SongCellRenderer.ROW_HEIGHT);
+        songList.setFixedCellWidth(SongCellRenderer.ROW_WIDTH);
+        songList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        songList.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        songList.addMouseListener(createSongListMouseListener(musicPlayerGUI.musicPlayer));
+
+        JScrollPane scrollPane = new JScrollPane(songList);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
 
         // Render each song
-        renderSongPanels(playlist, musicPlayerGUI.musicPlayer, musicPlayerGUI);
+        renderSongList();
 
         // Show the window
         setVisible(true);
@@ -123,106 +133,98 @@ public class PlaylistViewerWindow extends JFrame {
         songChecker.start();
     }
 
-    private void renderSongPanels(LinkedList<Song> playlist, MusicPlayer musicPlayer, MusicPlayerGUI musicPlayerGUI) {
-        songListPanel.removeAll();
-
-        for (Song song : playlist) {
-            JPanel songPanel = new JPanel(new BorderLayout());
-            songPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-            songPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 80));
-            songPanel.setBackground(Color.WHITE);
-            songPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
-
-            // Mouse click behavior
-            songPanel.addMouseListener(new MouseAdapter() {
-                private long lastClickTime = 0;
-
-                @Override
-                public void mouseClicked(MouseEvent e) {
-                    long currentTime = System.currentTimeMillis();
-                    if (currentTime - lastClickTime < 400) {
-                        // Double click = play
-                        musicPlayer.setIndex(song); // Set the playlist index to the previous song
-                        musicPlayer.nextSong(); // Play the next song
-                    } else {
-                        // Single click = select
-                        if (selectedPanel != null) {
-                            selectedPanel.setBackground(Color.WHITE);
-                        }
-                        songPanel.setBackground(new Color(220, 220, 255));
-                        selectedPanel = songPanel;
-                    }
-                    lastClickTime = currentTime;
-                }
-            });
-
-            // --- Image / Cover ---
-            JLabel imageLabel = new JLabel();
-            BufferedImage cover = song.getCoverImage();
-            if (cover != null) {
-                imageLabel.setIcon(new ImageIcon(cover.getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
-            } else {
-                imageLabel.setIcon(new ImageIcon(new ImageIcon("src/assets/record.png").getImage().getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
-            }
-            imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
-            songPanel.add(imageLabel, BorderLayout.WEST);
-
-            // --- Title + Artist ---
-            JPanel infoPanel = new JPanel();
-            infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-            infoPanel.setOpaque(false);
-
-            JLabel titleLabel = new JLabel(song.getSongTitle());
-            titleLabel.setFont(new Font("Dialog", Font.BOLD, 16));
-
-            JLabel artistLabel = new JLabel(song.getSongArtist());
-            artistLabel.setFont(new Font("Dialog", Font.PLAIN, 12));
-            artistLabel.setForeground(Color.GRAY);
-
-            infoPanel.add(titleLabel);
-            infoPanel.add(artistLabel);
-            songPanel.add(infoPanel, BorderLayout.CENTER);
+    // Playlist still being read by a PlaylistLoader: rows are appended as they arrive, playing
+    // and shuffling wait until the whole playlist is there
+    public void setLoading(boolean loading) {
+        this.loading = loading;
+        setPlayable(!loading);
+        updateSongCount();
+    }
 
-            // --- 3-dot menu button ---
-            JButton menuButton = new JButton("⋮");
-            menuButton.setFont(new Font("Dialog", Font.BOLD, 16));
-            menuButton.setFocusPainted(false);
-            menuButton.setBorderPainted(false);
-            menuButton.setContentAreaFilled(false);
-            menuButton.setOpaque(false);
-            menuButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+    // Loading was given up for a newer playlist: the rows read so far stay, but the player never
+    // switched to this playlist, so playing and shuffling stay off
+    public void loadingCancelled() {
+        loading = false;
+        setPlayable(false);
+        songCountLabel.setText(playlist.size() + " Songs, loading cancelled");
+    }
 
-            // Popup menu
-            JPopupMenu popupMenu = new JPopupMenu();
+    private void setPlayable(boolean playable) {
+        this.playable = playable;
+        for (Component button : buttonPanel.getComponents()) {
+            button.setEnabled(playable);
+        }
+    }
 
-            JMenuItem queueItem = new JMenuItem("Queue");
-            queueItem.addActionListener(e -> {
-                musicPlayer.addToQueue(song);
+    // Append rows streamed in by a PlaylistLoader
+    public void addSongs(List<Song> songs) {
+        playlist.addAll(songs);
+        songListModel.refresh();
+        updateSongCount();
+    }
 
-            });
-            JMenuItem playlistItem = new JMenuItem("Add to Playlist");
-            JMenuItem removeItem = new JMenuItem("Remove");
+    // The songs shown, rows removed while loading already left out
+    public Playlist getPlaylist() {
+        return playlist;
+    }
 
-            popupMenu.add(queueItem);
-            popupMenu.add(playlistItem);
-            popupMenu.add(removeItem);
+    private void updateSongCount() {
+        songCountLabel.setText(playlist.size() + (loading ? " Songs, loading..." : " Songs"));
+    }
 
-            // remove
-            removeItem.addActionListener(e -> {
-                playlist.remove(song);
-                renderSongPanels(playlist, musicPlayerGUI.musicPlayer, musicPlayerGUI);
-            });
+    private void renderSongList() {
+        songListModel.refresh();
+        updateSongCount();
+    }
 
-            // Show popup on click
-            menuButton.addActionListener(e -> popupMenu.show(menuButton, 0, menuButton.getHeight()));
+    private MouseAdapter createSongListMouseListener(MusicPlayer musicPlayer) {
+        // Popup menu, shared by every row
+        JPopupMenu popupMenu = new JPopupMenu();
+        final Song[] popupSong = new Song[1];
+        final int[] popupIndex = new int[1];
 
-            songPanel.add(menuButton, BorderLayout.EAST);
+        JMenuItem queueItem = new JMenuItem("Queue");
+        queueItem.addActionListener(e -> {
+            musicPlayer.addToQueue(popupSong[0]);
 
-            songListPanel.add(songPanel);
-        }
+        });
+        JMenuItem playlistItem = new JMenuItem("Add to Playlist");
+        playlistItem.addActionListener(e -> MusicPlaylistDialog.addToPlaylist(PlaylistViewerWindow.this, popupSong[0]));
+        JMenuItem removeItem = new JMenuItem("Remove");
+
+        popupMenu.add(queueItem);
+        popupMenu.add(playlistItem);
+        popupMenu.add(removeItem);
+
+        // remove
+        removeItem.addActionListener(e -> {
+            // By position, the same song can be in the playlist twice
+            if (popupIndex[0] < playlist.size() && playlist.get(popupIndex[0]) == popupSong[0]) {
+                musicPlayer.removeFromPlaylist(playlist, popupIndex[0]);
+            }
+            renderSongList();
+        });
 
-        songListPanel.revalidate();
-        songListPanel.repaint();
+        return new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = songList.locationToIndex(e.getPoint());
+                if (index < 0 || !songList.getCellBounds(index, index).contains(e.getPoint())) return;
+                Song song = songListModel.getElementAt(index);
+
+                if (SongCellRenderer.isMenuClick(songList, e.getX())) {
+                    // Show popup on click
+                    popupSong[0] = song;
+                    popupIndex[0] = index;
+                    Rectangle bounds = songList.getCellBounds(index, index);
+                    popupMenu.show(songList, songList.getWidth() - SongCellRenderer.MENU_WIDTH, bounds.y + bounds.height);
+                } else if (e.getClickCount() == 2 && playable) {
+                    // Double click = play
+                    musicPlayer.playFromPlaylist(playlist, index, song);
+                }
+                // Single click = select and highlight, handled by the list selection
+            }
+        };
     }
 
 }
@@ -1,16 +1,19 @@
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
-import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
-import java.util.LinkedList;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.List;
 
 public class QueueViewerWindow extends JFrame {
-    private JPanel queuePanel;
+    private final SongListModel queueModel = new SongListModel();
+    private final JList<Song> queueList;
     private MusicPlayer musicPlayer;
-    private LinkedList<Song> songQueue;
+
+    // Redraws the list whenever the player's queue changes, no polling
+    private final ChangeListener queueListener = e -> renderQueue();
 
     public QueueViewerWindow(MusicPlayer musicPlayer) {
         this.musicPlayer = musicPlayer;
@@ -26,92 +29,87 @@ public class QueueViewerWindow extends JFrame {
         header.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
         add(header, BorderLayout.NORTH);
 
-        queuePanel = new JPanel();
-        queuePanel.setLayout(new BoxLayout(queuePanel, BoxLayout.Y_AXIS));
+        // Only the visible rows are painted, all through one shared renderer
+        queueList = new JList<>(queueModel);
+        queueList.setCellRenderer(new SongCellRenderer(true));
+        queueList.setFixedCellHeight(SongCellRenderer.ROW_HEIGHT);
+        queueList.setFixedCellWidth(SongCellRenderer.ROW_WIDTH);
+        queueList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        queueList.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        queueList.addMouseListener(createQueueMouseListener());
 
-        JScrollPane scrollPane = new JScrollPane(queuePanel);
+        JScrollPane scrollPane = new JScrollPane(queueList);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
 
+        musicPlayer.addQueueListener(queueListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                musicPlayer.removeQueueListener(queueListener);
+            }
+        });
+
         renderQueue();
     }
 
     private void renderQueue() {
-        queuePanel.removeAll();
+        // The snapshot is only copied when the queue changed since the last one
         List<Song> queue = musicPlayer.getQueue();
-        Song playingSong = musicPlayer.getCurrentSong();
-
-        for (Song song : queue) {
-            JPanel songPanel = new JPanel(new BorderLayout());
-            songPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-            songPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 80));
-            songPanel.setBackground(Color.WHITE);
-            songPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
-
-            // Cover image
-            JLabel imageLabel = new JLabel();
-            BufferedImage cover = song.getCoverImage();
-            if (cover != null) {
-                imageLabel.setIcon(new ImageIcon(cover.getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
-            } else {
-                imageLabel.setIcon(new ImageIcon(new ImageIcon("src/assets/record.png").getImage().getScaledInstance(64, 64, Image.SCALE_SMOOTH)));
-            }
-            imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 10));
-            songPanel.add(imageLabel, BorderLayout.WEST);
-
-            // Title and artist
-            JPanel infoPanel = new JPanel();
-            infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-            infoPanel.setOpaque(false);
-
-            JLabel titleLabel = new JLabel(song.getSongTitle());
-            titleLabel.setFont(new Font("Dialog", Font.BOLD, 16));
-
-            JLabel artistLabel = new JLabel(song.getSongArtist());
-            artistLabel.setFont(new Font("Dialog", Font.PLAIN, 12));
-            artistLabel.setForeground(Color.GRAY);
-
-            infoPanel.add(titleLabel);
-            infoPanel.add(artistLabel);
-            songPanel.add(infoPanel, BorderLayout.CENTER);
-
-            // Remove button
-            JButton removeButton = new JButton("❌");
-            removeButton.setFocusPainted(false);
-            removeButton.setBorderPainted(false);
-            removeButton.setContentAreaFilled(false);
-            removeButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-            removeButton.addActionListener((ActionEvent e) -> {
-                musicPlayer.removeFromQueue(song);
-                renderQueue();
-            });
-            songPanel.add(removeButton, BorderLayout.EAST);
-
-            // Highlight selection
-            songPanel.addMouseListener(new MouseAdapter() {
-                @Override
-                public void mouseClicked(MouseEvent e) {
-                    // Optional: single click highlight
-                    for (Component comp : queuePanel.getComponents()) {
-                        comp.setBackground(Color.WHITE);
-                    }
-                    songPanel.setBackground(new Color(220, 220, 255));
-                }
-            });
-
-
-
-            queuePanel.add(songPanel);
+        if (queue != queueModel.getSongs()) {
+            queueModel.setSongs(queue);
         }
-
-        queuePanel.revalidate();
-        queuePanel.repaint();
     }
 
-    public void updateQueueUI(List<Song> updatedQueue) {
-        this.songQueue = new LinkedList<>(updatedQueue);  // Update local copy
-        renderQueue();  // Re-render song list panel
+    private MouseAdapter createQueueMouseListener() {
+        // Popup menu, shared by every row
+        JPopupMenu popupMenu = new JPopupMenu();
+        final int[] popupIndex = new int[1];
+
+        JMenuItem playNextItem = new JMenuItem("Play Next");
+        playNextItem.addActionListener(e -> moveSong(popupIndex[0], 0));
+        JMenuItem moveUpItem = new JMenuItem("Move Up");
+        moveUpItem.addActionListener(e -> moveSong(popupIndex[0], popupIndex[0] - 1));
+        JMenuItem moveDownItem = new JMenuItem("Move Down");
+        moveDownItem.addActionListener(e -> moveSong(popupIndex[0], popupIndex[0] + 1));
+        JMenuItem removeItem = new JMenuItem("Remove");
+        removeItem.addActionListener(e -> removeSong(popupIndex[0]));
+
+        popupMenu.add(playNextItem);
+        popupMenu.add(moveUpItem);
+        popupMenu.add(moveDownItem);
+        popupMenu.add(removeItem);
+
+        return new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = queueList.locationToIndex(e.getPoint());
+                if (index < 0 || !queueList.getCellBounds(index, index).contains(e.getPoint())) return;
+
+                if (SongCellRenderer.isMenuClick(queueList, e.getX())) {
+                    // Show popup on click
+                    popupIndex[0] = index;
+                    Rectangle bounds = queueList.getCellBounds(index, index);
+                    popupMenu.show(queueList, queueList.getWidth() - SongCellRenderer.MENU_WIDTH, bounds.y + bounds.height);
+                }
+                // Single click = select and highlight, handled by the list selection
+            }
+        };
+    }
 
+    // Positions are those of the snapshot on screen, ignore them if a song was played meanwhile
+    private void moveSong(int from, int to) {
+        int size = queueModel.getSize();
+        if (from < 0 || to < 0 || from >= size || to >= size) return;
+        if (musicPlayer.getQueue() != queueModel.getSongs()) return;
+        musicPlayer.moveSongInQueue(from, to);
+        queueList.setSelectedIndex(to);
+    }
 
+    // Same check as moveSong, the row on screen may no longer be at this position in the queue
+    private void removeSong(int index) {
+        if (index < 0 || index >= queueModel.getSize()) return;
+        if (musicPlayer.getQueue() != queueModel.getSongs()) return;
+        musicPlayer.removeFromQueue(index);
     }
 }
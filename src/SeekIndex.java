@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// File positions of every INTERVAL-th MPEG frame of a song. Seeking positions the file at the
+// closest indexed frame and only skips the few frames after it, so the cost is the same at the
+// start and at the end of a long mix.
+public class SeekIndex {
+
+    // Frames between two indexed positions (~0.8 s at 44.1 kHz)
+    public static final int INTERVAL = 32;
+
+    // Bytes read from the file at once, enough for about a hundred frames
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    // offsets[i] is the position of frame i * INTERVAL
+    private final int[] offsets;
+
+    SeekIndex(int[] offsets) {
+        this.offsets = offsets;
+    }
+
+    // Walk the frame headers of the file, the audio data itself is not decoded. Returns null when
+    // no frame is found or the file is too large for int offsets
+    public static SeekIndex build(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long firstFrame = Mp3Metadata.findFirstFrame(channel);
+            if (firstFrame < 0 || fileSize > Integer.MAX_VALUE) return null;
+
+            // Only the frame headers are needed, read through one small buffer instead of mapping
+            // the file, the window moves forward whenever a header falls outside of it
+            ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+            long windowStart = 0;
+            window.limit(0);
+            int[] offsets = new int[64];
+            int count = 0;
+            int frame = 0;
+
+            int position = (int) firstFrame;
+            while (position + 4 <= fileSize) {
+                if (position + 4 > windowStart + window.limit()) {
+                    windowStart = position;
+                    window.clear();
+                    while (window.hasRemaining()) {
+                        if (channel.read(window, windowStart + window.position()) < 0) break;
+                    }
+                    window.flip();
+                    if (window.limit() < 4) break;
+                }
+
+                int frameLength = Mp3Metadata.frameLength(window.getInt((int) (position - windowStart)));
+                if (frameLength <= 0) {
+                    // Junk between frames or the ID3v1 tag at the end, look for the next sync
+                    position++;
+                    continue;
+                }
+
+                if (frame % INTERVAL == 0) {
+                    if (count == offsets.length) {
+                        int[] grown = new int[count * 2];
+                        System.arraycopy(offsets, 0, grown, 0, count);
+                        offsets = grown;
+                    }
+                    offsets[count++] = position;
+                }
+                frame++;
+                position += frameLength;
+            }
+
+            if (count == 0) return null;
+            int[] trimmed = new int[count];
+            System.arraycopy(offsets, 0, trimmed, 0, count);
+            return new SeekIndex(trimmed);
+        }
+    }
+
+    // Closest indexed frame at or before this frame
+    public int indexedFrameBefore(int frame) {
+        int index = Math.max(0, Math.min(frame / INTERVAL, offsets.length - 1));
+        return index * INTERVAL;
+    }
+
+    // File position of a frame returned by indexedFrameBefore
+    public long offsetOf(int indexedFrame) {
+        return offsets[indexedFrame / INTERVAL];
+    }
+
+    int[] getOffsets() {
+        return offsets;
+    }
+}
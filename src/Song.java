@@ -1,64 +1,120 @@
 import com.mpatric.mp3agic.Mp3File;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.audio.mp3.MP3File;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.images.Artwork;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 public class Song {
 
     private String songTitle;
+    // Title folded by TextNormalizer for searching, computed once on first use
+    private String searchTitle;
     private String songArtist;
+    private String songAlbum = "";
     private String songLength;
     private String filePath;
-    private BufferedImage coverImage;
-    private Mp3File mp3File;
+    // Artwork stays in the file and is decoded on demand by CoverArtCache
+    private long artworkHash;
+    private long artworkOffset = -1;
+    private int artworkLength;
+    private int frameCount;
+    private long lengthInMilliseconds;
     private double frameRatePerMilliseconds;
+    // Frame positions used for seeking, built the first time they are needed
+    private SeekIndex seekIndex;
 
     public Song(String filePath) {
         this.filePath = filePath;
+
+        // Unchanged files are restored from the metadata cache without opening the MP3
+        SongMetadataCache cache = SongMetadataCache.getInstance();
+        SongMetadataCache.Entry entry = cache.lookup(filePath);
+        if (entry != null) {
+            songTitle = entry.title;
+            songArtist = entry.artist;
+            songAlbum = entry.album;
+            setLength(entry.frameCount, entry.lengthInMilliseconds);
+            artworkHash = entry.artworkHash;
+            artworkOffset = entry.artworkOffset;
+            artworkLength = entry.artworkLength;
+            return;
+        }
+
         try {
-            mp3File = new Mp3File(filePath);
-            frameRatePerMilliseconds = (double) mp3File.getFrameCount() / mp3File.getLengthInMilliseconds();
-            songLength = convertToSongLengthFormat();
-
-            // Create audio file obj
-            AudioFile audioFile = AudioFileIO.read(new File(filePath));
-
-            // Get metadata
-            Tag tag = audioFile.getTag();
-            if (tag != null) {
-                songTitle = tag.getFirst(FieldKey.TITLE);
-                songArtist = tag.getFirst(FieldKey.ARTIST);
-
-                // Get artwork (cover image)
-                List<Artwork> artworkList = tag.getArtworkList();
-                if (artworkList != null && !artworkList.isEmpty()) {
-                    byte[] imageData = artworkList.getFirst().getBinaryData();
-                    coverImage = ImageIO.read(new ByteArrayInputStream(imageData));
+            // Tags, artwork and duration in one pass over the file
+            Mp3Metadata metadata = Mp3Metadata.read(filePath);
+            if (metadata != null) {
+                songTitle = metadata.getTitle();
+                songArtist = metadata.getArtist();
+                songAlbum = metadata.getAlbum();
+                setLength(metadata.getFrameCount(), metadata.getLengthInMilliseconds());
+
+                byte[] imageData = metadata.getArtworkData();
+                if (imageData != null) {
+                    artworkHash = SongMetadataCache.hashBytes(imageData);
+                    artworkOffset = metadata.getArtworkOffset();
+                    artworkLength = imageData.length;
                 }
-
             } else {
-                songTitle = "N/A";
-                songArtist = "N/A";
+                // Unusual files (compressed tags, odd headers...) still go through the full parsers
+                readWithTagLibraries();
             }
 
+            cache.store(filePath, songTitle, songArtist, songAlbum, lengthInMilliseconds, frameCount,
+                    artworkHash, artworkOffset, artworkLength);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private void readWithTagLibraries() throws Exception {
+        Mp3File mp3File = new Mp3File(filePath);
+        setLength(mp3File.getFrameCount(), mp3File.getLengthInMilliseconds());
+
+        // Create audio file obj
+        AudioFile audioFile = AudioFileIO.read(new File(filePath));
+
+        // Get metadata
+        Tag tag = audioFile.getTag();
+        if (tag != null) {
+            songTitle = tag.getFirst(FieldKey.TITLE);
+            songArtist = tag.getFirst(FieldKey.ARTIST);
+            songAlbum = tag.getFirst(FieldKey.ALBUM);
+
+            // Get artwork (cover image)
+            List<Artwork> artworkList = tag.getArtworkList();
+            if (artworkList != null && !artworkList.isEmpty()) {
+                byte[] imageData = artworkList.getFirst().getBinaryData();
+                artworkHash = SongMetadataCache.hashBytes(imageData);
+                artworkLength = imageData.length;
+            }
+
+        } else {
+            songTitle = "N/A";
+            songArtist = "N/A";
+        }
+    }
+
+    private void setLength(int frameCount, long lengthInMilliseconds) {
+        this.frameCount = frameCount;
+        this.lengthInMilliseconds = lengthInMilliseconds;
+        frameRatePerMilliseconds = (double) frameCount / lengthInMilliseconds;
+        songLength = convertToSongLengthFormat();
+    }
+
     private String convertToSongLengthFormat(){
-        long minutes = mp3File.getLengthInSeconds()/60;
-        long seconds = mp3File.getLengthInSeconds()%60;
+        long lengthInSeconds = (lengthInMilliseconds + 500) / 1000;
+        long minutes = lengthInSeconds/60;
+        long seconds = lengthInSeconds%60;
         String formattedTime = String.format("%02d:%02d", minutes, seconds);
 
         return formattedTime;
@@ -70,10 +126,19 @@ public class Song {
         return songTitle;
     }
 
+    public String getSearchTitle() {
+        if (searchTitle == null) searchTitle = TextNormalizer.fold(songTitle);
+        return searchTitle;
+    }
+
     public String getSongArtist() {
         return songArtist;
     }
 
+    public String getSongAlbum() {
+        return songAlbum;
+    }
+
     public String getSongLength() {
         return songLength;
     }
@@ -82,18 +147,77 @@ public class Song {
         return filePath;
     }
 
-    public BufferedImage getCoverImage() {
-        return coverImage;
+    public boolean hasArtwork() {
+        return artworkHash != 0;
+    }
+
+    // Identifies the artwork content, songs from the same album share the same hash
+    public long getArtworkHash() {
+        return artworkHash;
+    }
+
+    // Read the raw (still encoded) artwork bytes, or null if the song has none
+    public byte[] readArtworkData() {
+        if (!hasArtwork()) return null;
+
+        try {
+            if (artworkOffset >= 0) {
+                // Read the picture straight from its position in the tag
+                try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(artworkLength);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, artworkOffset + buffer.position()) < 0) return null;
+                    }
+                    return buffer.array();
+                }
+            }
+
+            Tag tag = AudioFileIO.read(new File(filePath)).getTag();
+            List<Artwork> artworkList = (tag != null) ? tag.getArtworkList() : null;
+            if (artworkList != null && !artworkList.isEmpty()) {
+                return artworkList.getFirst().getBinaryData();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
     }
 
-    public Mp3File getMp3File() {
-        return mp3File;
+    public long getLengthInMilliseconds() {
+        return lengthInMilliseconds;
     }
 
     public double getFrameRatePerMilliseconds() {
         return frameRatePerMilliseconds;
     }
 
+    // Walks the frame headers once, later calls and other Song objects for the same file
+    // get the index from the metadata cache. Null if the file could not be indexed
+    public synchronized SeekIndex getSeekIndex() {
+        if (seekIndex != null) return seekIndex;
+
+        SongMetadataCache cache = SongMetadataCache.getInstance();
+        SongMetadataCache.Entry entry = cache.lookup(filePath);
+        if (entry != null && entry.seekIndex != null) {
+            seekIndex = entry.seekIndex;
+            return seekIndex;
+        }
+
+        try {
+            seekIndex = SeekIndex.build(filePath);
+            if (seekIndex != null) {
+                cache.storeSeekIndex(filePath, seekIndex);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return seekIndex;
+    }
+
 
     public String toString(){
         return this.songTitle;
@@ -0,0 +1,66 @@
+import javax.swing.*;
+import java.awt.*;
+
+// Shared renderer for song rows: cover, title + artist and the 3-dot menu glyph.
+// A single instance paints every visible row, so no components are created per song.
+public final class SongCellRenderer extends JPanel implements ListCellRenderer<Song> {
+
+    public static final int ROW_HEIGHT = CoverArtCache.THUMBNAIL_SIZE + 10;
+    public static final int ROW_WIDTH = 300;
+
+    // Width of the 3-dot menu area on the right of each row
+    public static final int MENU_WIDTH = 40;
+
+    private static final Color SELECTED_COLOR = new Color(220, 220, 255);
+
+    private final JLabel imageLabel = new JLabel();
+    private final JLabel titleLabel = new JLabel();
+    private final JLabel artistLabel = new JLabel();
+
+    public SongCellRenderer(boolean showMenu) {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        // Image
+        imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
+        add(imageLabel, BorderLayout.WEST);
+
+        // Title + Artist
+        JPanel infoPanel = new JPanel();
+        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+        infoPanel.setOpaque(false);  // Don't override panel bg
+
+        titleLabel.setFont(new Font("Dialog", Font.BOLD, 16));
+        artistLabel.setFont(new Font("Dialog", Font.PLAIN, 12));
+        artistLabel.setForeground(Color.GRAY);
+
+        infoPanel.add(titleLabel);
+        infoPanel.add(artistLabel);
+        add(infoPanel, BorderLayout.CENTER);
+
+        // 3-dot menu glyph, clicks on it are handled by the list's mouse listener
+        if (showMenu) {
+            JLabel menuLabel = new JLabel("⋮", SwingConstants.CENTER);
+            menuLabel.setFont(new Font("Dialog", Font.BOLD, 16));
+            menuLabel.setPreferredSize(new Dimension(MENU_WIDTH, CoverArtCache.THUMBNAIL_SIZE));
+            add(menuLabel, BorderLayout.EAST);
+        }
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Song> list, Song song, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        // Covers are decoded in the background, the row is repainted once its thumbnail is ready
+        ImageIcon cover = CoverArtCache.getIconAsync(song, CoverArtCache.THUMBNAIL_SIZE, list::repaint);
+        imageLabel.setIcon(cover != null ? cover : CoverArtCache.getDefaultIcon(CoverArtCache.THUMBNAIL_SIZE));
+        titleLabel.setText(song.getSongTitle());
+        artistLabel.setText(song.getSongArtist());
+        setBackground(isSelected ? SELECTED_COLOR : Color.WHITE);
+        return this;
+    }
+
+    // Whether a click at this x coordinate of the list hits the 3-dot menu
+    public static boolean isMenuClick(JList<?> list, int x) {
+        return x >= list.getWidth() - MENU_WIDTH - 5;
+    }
+}
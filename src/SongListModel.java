@@ -0,0 +1,40 @@
+import javax.swing.*;
+import java.util.List;
+
+// List model over an already sorted list of songs. Descending order is a view on the same
+// list, so toggling the sort order doesn't copy or reverse anything.
+public class SongListModel extends AbstractListModel<Song> {
+
+    private List<Song> songs = List.of();
+    private boolean ascending = true;
+
+    // Show this list, the model keeps a reference instead of copying it
+    public void setSongs(List<Song> songs) {
+        this.songs = songs;
+        fireContentsChanged(this, 0, Integer.MAX_VALUE);
+    }
+
+    public List<Song> getSongs() {
+        return songs;
+    }
+
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+        fireContentsChanged(this, 0, Integer.MAX_VALUE);
+    }
+
+    // Call after the backing list changed in place
+    public void refresh() {
+        fireContentsChanged(this, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getSize() {
+        return songs.size();
+    }
+
+    @Override
+    public Song getElementAt(int index) {
+        return ascending ? songs.get(index) : songs.get(songs.size() - 1 - index);
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Persistent index of parsed song metadata, keyed by file path and validated with the file size and
+// modification time. A warm start only needs to read this one file instead of parsing every MP3.
+//
+// File layout (big endian): magic, version, entry count, then per entry:
+//   path, size, mtime, title, artist, album, length in ms, frame count, artwork hash, offset and length,
+//   seek index entry count followed by the indexed frame positions (0 until the song was seeked)
+// Strings are stored as a 2 byte length followed by UTF-8 bytes.
+public class SongMetadataCache {
+
+    private static final int MAGIC = 0x4A4D4958; // "JMIX"
+    private static final int VERSION = 4;
+
+    private static final File CACHE_FILE = new File("./src/Library/.metadata.idx");
+
+    private static SongMetadataCache instance;
+
+    public static synchronized SongMetadataCache getInstance() {
+        if (instance == null) {
+            instance = new SongMetadataCache(CACHE_FILE);
+            instance.load();
+
+            // Persist whatever was parsed since the last save when the app exits
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::save, "metadata-cache-save"));
+        }
+        return instance;
+    }
+
+    // Metadata stored for a single file
+    public static class Entry {
+        final long size;
+        final long lastModified;
+        final String title;
+        final String artist;
+        final String album;
+        final long lengthInMilliseconds;
+        final int frameCount;
+        final long artworkHash; // 0 when the file has no artwork
+        final long artworkOffset; // -1 when the artwork has to be read through the tag library
+        final int artworkLength;
+        final SeekIndex seekIndex; // null until the song was seeked once
+
+        Entry(long size, long lastModified, String title, String artist, String album, long lengthInMilliseconds,
+              int frameCount, long artworkHash, long artworkOffset, int artworkLength, SeekIndex seekIndex) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.lengthInMilliseconds = lengthInMilliseconds;
+            this.frameCount = frameCount;
+            this.artworkHash = artworkHash;
+            this.artworkOffset = artworkOffset;
+            this.artworkLength = artworkLength;
+            this.seekIndex = seekIndex;
+        }
+    }
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    SongMetadataCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    // Return the cached metadata if the file has not changed since it was parsed
+    public Entry lookup(String filePath) {
+        Entry entry = entries.get(filePath);
+        if (entry == null) return null;
+
+        File file = new File(filePath);
+        if (file.length() != entry.size || file.lastModified() != entry.lastModified) {
+            return null;
+        }
+        return entry;
+    }
+
+    public void store(String filePath, String title, String artist, String album, long lengthInMilliseconds,
+                      int frameCount, long artworkHash, long artworkOffset, int artworkLength) {
+        File file = new File(filePath);
+        entries.put(filePath, new Entry(file.length(), file.lastModified(), title, artist, album,
+                lengthInMilliseconds, frameCount, artworkHash, artworkOffset, artworkLength, null));
+        dirty = true;
+    }
+
+    // Attach a seek index to the cached metadata of a file that has not changed since
+    public void storeSeekIndex(String filePath, SeekIndex seekIndex) {
+        Entry entry = lookup(filePath);
+        if (entry == null) return;
+
+        entries.put(filePath, new Entry(entry.size, entry.lastModified, entry.title, entry.artist, entry.album,
+                entry.lengthInMilliseconds, entry.frameCount, entry.artworkHash, entry.artworkOffset,
+                entry.artworkLength, seekIndex));
+        dirty = true;
+    }
+
+    public void remove(String filePath) {
+        if (entries.remove(filePath) != null) {
+            dirty = true;
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.isFile()) return;
+
+        try {
+            // Read into the heap rather than mapped: a mapping keeps the file open until it is
+            // garbage collected, and on Windows save() could not replace it meanwhile
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                // Unknown format, the songs will simply be parsed again
+                return;
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                Entry entry = new Entry(buffer.getLong(), buffer.getLong(), readString(buffer),
+                        readString(buffer), readString(buffer), buffer.getLong(), buffer.getInt(), buffer.getLong(),
+                        buffer.getLong(), buffer.getInt(), readSeekIndex(buffer));
+                entries.put(path, entry);
+            }
+        } catch (Exception e) {
+            // A truncated or corrupted index is not fatal
+            e.printStackTrace();
+            entries.clear();
+        }
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        dirty = false;
+
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (parent == null || !parent.isDirectory()) return;
+
+        File tempFile = new File(parent, cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+            Map<String, Entry> snapshot = Map.copyOf(entries);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                writeString(out, entry.title);
+                writeString(out, entry.artist);
+                writeString(out, entry.album);
+                out.writeLong(entry.lengthInMilliseconds);
+                out.writeInt(entry.frameCount);
+                out.writeLong(entry.artworkHash);
+                out.writeLong(entry.artworkOffset);
+                out.writeInt(entry.artworkLength);
+                writeSeekIndex(out, entry.seekIndex);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            dirty = true;
+            return;
+        }
+
+        try {
+            // Replace the old index in one step so a crash never leaves a half written file
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            dirty = true;
+        }
+    }
+
+    // 64 bit FNV-1a hash used to identify artwork without keeping the image around
+    public static long hashBytes(byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return (hash == 0) ? 1 : hash;
+    }
+
+    private static SeekIndex readSeekIndex(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count == 0) return null;
+        int[] offsets = new int[count];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + count * 4);
+        return new SeekIndex(offsets);
+    }
+
+    private static void writeSeekIndex(DataOutputStream out, SeekIndex seekIndex) throws IOException {
+        int[] offsets = (seekIndex == null) ? new int[0] : seekIndex.getOffsets();
+        out.writeInt(offsets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xffff);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+}
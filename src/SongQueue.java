@@ -0,0 +1,231 @@
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// "Play next" queue of the player, a ring buffer: taking the next song or queueing one at either
+// end is O(1), inserting or removing one in the middle shifts only the shorter side and moving one
+// only the songs in between, each with arraycopy.
+// Windows read it through snapshot(), which is copied once per change and shared until the next
+// one, and listen for changes instead of polling. The engine thread takes songs while the GUI
+// edits the queue, so every method locks the queue.
+public class SongQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Song[] songs = new Song[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    // Bumped on every change, the snapshot is rebuilt when it no longer matches
+    private long version;
+    private long snapshotVersion = -1;
+    private List<Song> snapshot;
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Changes in a burst (e.g. from the engine thread) reach the listeners as one event
+    private final AtomicBoolean notifyPending = new AtomicBoolean();
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized Song get(int index) {
+        checkIndex(index, size);
+        return songs[slot(index)];
+    }
+
+    // Next song to play, or null
+    public synchronized Song peek() {
+        return (size == 0) ? null : songs[head];
+    }
+
+    // Take the next song to play, or null
+    public Song poll() {
+        Song song;
+        synchronized (this) {
+            if (size == 0) return null;
+            song = songs[head];
+            songs[head] = null;
+            head = slot(1);
+            size--;
+            version++;
+        }
+        fireChanged();
+        return song;
+    }
+
+    // Queue at the end
+    public void add(Song song) {
+        synchronized (this) {
+            add(size, song);
+        }
+    }
+
+    // Queue at this position, 0 plays it next
+    public void add(int index, Song song) {
+        synchronized (this) {
+            checkIndex(index, size + 1);
+            grow();
+            if (index < size - index) {
+                // Closer to the front: shift the songs before it one slot back
+                head = (head - 1 + songs.length) % songs.length;
+                shift(1, 0, index);
+            } else {
+                shift(index, index + 1, size - index);
+            }
+            songs[slot(index)] = song;
+            size++;
+            version++;
+        }
+        fireChanged();
+    }
+
+    public Song remove(int index) {
+        Song song;
+        synchronized (this) {
+            checkIndex(index, size);
+            song = songs[slot(index)];
+            if (index < size - index - 1) {
+                // Closer to the front: shift the songs before it one slot forward
+                shift(0, 1, index);
+                songs[head] = null;
+                head = slot(1);
+            } else {
+                shift(index + 1, index, size - index - 1);
+                songs[slot(size - 1)] = null;
+            }
+            size--;
+            version++;
+        }
+        fireChanged();
+        return song;
+    }
+
+    // Remove the first occurrence of the song
+    public boolean remove(Song song) {
+        synchronized (this) {
+            int index = indexOf(song);
+            if (index < 0) return false;
+            remove(index);
+        }
+        return true;
+    }
+
+    // Move the song at from so it ends up at position to, only the songs in between shift
+    public void move(int from, int to) {
+        synchronized (this) {
+            checkIndex(from, size);
+            checkIndex(to, size);
+            if (from == to) return;
+
+            Song song = songs[slot(from)];
+            if (from < to) {
+                shift(from + 1, from, to - from);
+            } else {
+                shift(to, to + 1, from - to);
+            }
+            songs[slot(to)] = song;
+            version++;
+        }
+        fireChanged();
+    }
+
+    public synchronized int indexOf(Song song) {
+        for (int i = 0; i < size; i++) {
+            if (songs[slot(i)].equals(song)) return i;
+        }
+        return -1;
+    }
+
+    // The queue as it is now. Unmodifiable, and the same list is returned until the queue changes,
+    // so a window can compare it by reference to skip redrawing
+    public synchronized List<Song> snapshot() {
+        if (snapshotVersion != version) {
+            Song[] copy = new Song[size];
+            int firstPart = Math.min(size, songs.length - head);
+            System.arraycopy(songs, head, copy, 0, firstPart);
+            System.arraycopy(songs, 0, copy, firstPart, size - firstPart);
+            snapshot = Collections.unmodifiableList(Arrays.asList(copy));
+            snapshotVersion = version;
+        }
+        return snapshot;
+    }
+
+    // Listeners are called on the EDT after the queue changed
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        if (listeners.isEmpty() || !notifyPending.compareAndSet(false, true)) return;
+        SwingUtilities.invokeLater(() -> {
+            notifyPending.set(false);
+            ChangeEvent event = new ChangeEvent(this);
+            for (ChangeListener listener : listeners) {
+                listener.stateChanged(event);
+            }
+        });
+    }
+
+    // Copy count songs from position from to position to, handling the wrap around in both
+    private void shift(int from, int to, int count) {
+        if (count <= 0) return;
+        if (from > to) {
+            for (int i = 0; i < count; ) {
+                int length = Math.min(count - i, Math.min(run(from + i), run(to + i)));
+                System.arraycopy(songs, slot(from + i), songs, slot(to + i), length);
+                i += length;
+            }
+        } else {
+            // Backwards, so an overlapping range is not overwritten before it was copied
+            for (int i = count; i > 0; ) {
+                int length = Math.min(i, Math.min(runBack(from + i), runBack(to + i)));
+                System.arraycopy(songs, slot(from + i - length), songs, slot(to + i - length), length);
+                i -= length;
+            }
+        }
+    }
+
+    // Slots from this position up to the end of the array
+    private int run(int index) {
+        return songs.length - slot(index);
+    }
+
+    // Slots before this position down to the start of the array
+    private int runBack(int end) {
+        return slot(end - 1) + 1;
+    }
+
+    private int slot(int index) {
+        return (head + index) % songs.length;
+    }
+
+    private void grow() {
+        if (size < songs.length) return;
+        Song[] bigger = new Song[songs.length * 2];
+        int firstPart = songs.length - head;
+        System.arraycopy(songs, head, bigger, 0, firstPart);
+        System.arraycopy(songs, 0, bigger, firstPart, head);
+        songs = bigger;
+        head = 0;
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+    }
+}
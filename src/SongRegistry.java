@@ -0,0 +1,92 @@
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// The one Song object of every file the app has seen, keyed by its absolute path. Songs are
+// created (and their file parsed) the first time a path is asked for, later requests and
+// playlists get the same instance back. Titles and artists are indexed too, so two songs with
+// the same title no longer overwrite each other and resolving a playlist row is a hash lookup.
+// Safe to use from the library scanner threads and the EDT at the same time.
+public class SongRegistry {
+
+    private static SongRegistry instance;
+
+    public static synchronized SongRegistry getInstance() {
+        if (instance == null) {
+            instance = new SongRegistry();
+        }
+        return instance;
+    }
+
+    private final Map<String, Song> songsByPath = new ConcurrentHashMap<>();
+    // Songs of each title / artist, in the order they were registered
+    private final Map<String, List<Song>> songsByTitle = new ConcurrentHashMap<>();
+    private final Map<String, List<Song>> songsByArtist = new ConcurrentHashMap<>();
+
+    // The song of this file, parsed the first time only
+    public Song get(String filePath) {
+        String key = key(filePath);
+        Song song = songsByPath.get(key);
+        if (song != null) return song;
+
+        // Parse outside the map, if another thread registered the file meanwhile its song wins
+        Song parsed = new Song(key);
+        song = songsByPath.putIfAbsent(key, parsed);
+        if (song != null) return song;
+
+        index(songsByTitle, parsed.getSongTitle(), parsed);
+        index(songsByArtist, parsed.getSongArtist(), parsed);
+        return parsed;
+    }
+
+    // The song of this file if it was already registered, never parses
+    public Song lookup(String filePath) {
+        // Paths handed out by the registry are keys already
+        Song song = songsByPath.get(filePath);
+        return (song != null) ? song : songsByPath.get(key(filePath));
+    }
+
+    // First registered song with exactly this title, or null
+    public Song findByTitle(String title) {
+        List<Song> songs = (title != null) ? songsByTitle.get(title) : null;
+        return (songs != null && !songs.isEmpty()) ? songs.get(0) : null;
+    }
+
+    public List<Song> getSongsByTitle(String title) {
+        return songsByTitle.getOrDefault(title, List.of());
+    }
+
+    public List<Song> getSongsByArtist(String artist) {
+        return songsByArtist.getOrDefault(artist, List.of());
+    }
+
+    public void remove(Song song) {
+        if (!songsByPath.remove(key(song.getFilePath()), song)) return;
+        unindex(songsByTitle, song.getSongTitle(), song);
+        unindex(songsByArtist, song.getSongArtist(), song);
+    }
+
+    public int size() {
+        return songsByPath.size();
+    }
+
+    // Same file, same key: "./src/Library/a.mp3" and its absolute form are one song
+    private static String key(String filePath) {
+        return new File(filePath).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private static void index(Map<String, List<Song>> index, String value, Song song) {
+        if (value == null) return;
+        index.computeIfAbsent(value, v -> new CopyOnWriteArrayList<>()).add(song);
+    }
+
+    private static void unindex(Map<String, List<Song>> index, String value, Song song) {
+        if (value == null) return;
+        index.computeIfPresent(value, (v, songs) -> {
+            songs.remove(song);
+            return songs.isEmpty() ? null : songs;
+        });
+    }
+}
@@ -0,0 +1,543 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Search index behind the library search bar. Titles, artists and albums are split into words and
+// every distinct word keeps, per field, the songs it appears in (inverted index). The words
+// themselves are indexed by their trigrams, so a query only scores the few words that look like it
+// with SongTree.wordScore instead of every word of every song. Searches run off the EDT while the
+// library scan keeps adding songs, so readers and writers go through a read/write lock. In a large
+// library the songs are ranked in ranges of ids on the fork/join pool, each range keeping its own
+// top k, and the ranges are merged at the end.
+//
+// A query word can be limited to one field with a prefix: "artist:deco27 ghost". Every such word
+// has to match, and its score adds to the score of the best plain word.
+public class SongSearchIndex {
+
+    static final int TITLE = 0;
+    static final int ARTIST = 1;
+    static final int ALBUM = 2;
+    private static final String[] FIELD_NAMES = {"title", "artist", "album"};
+    private static final int ANY_FIELD = -1;
+
+    // Added to a word's score depending on where it matched: the title first, then the artist,
+    // then the album
+    private static final int[] FIELD_PENALTY = {0, 1, 2};
+
+    // Boundary marks so the first and last letters of a word get their own trigrams
+    private static final char WORD_START = '\u0002';
+    private static final char WORD_END = '\u0003';
+
+    // Word lists at least this long are scored in parallel
+    private static final int PARALLEL_WORDS = 2_000;
+    // Libraries at least this large are ranked in parallel, in ranges of at least SONG_CHUNK ids
+    private static final int PARALLEL_SONGS = 10_000;
+    private static final int SONG_CHUNK = 4096;
+
+    // Growable list of ints, postings are kept unboxed
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+
+    // A distinct word with the ids of the songs containing it, one list per field. Ids are handed
+    // out in order, so every list is sorted
+    private static class Word {
+        final String text;
+        final int id;
+        final IntList[] postings = new IntList[FIELD_NAMES.length];
+
+        Word(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+
+        void add(int field, int songId) {
+            if (postings[field] == null) postings[field] = new IntList();
+            postings[field].add(songId);
+        }
+    }
+
+    // A word of the query, limited to one field or not
+    private record Term(String text, int field) {
+    }
+
+    // Best score per song id, only the ids that were set are reset afterwards
+    private static class ScoreTable {
+        int[] scores = new int[0];
+        final IntList touched = new IntList();
+
+        void ensureCapacity(int songCount) {
+            if (scores.length < songCount) {
+                scores = new int[songCount + songCount / 2];
+                Arrays.fill(scores, Integer.MAX_VALUE);
+            }
+        }
+
+        void keepMin(int songId, int score) {
+            if (scores[songId] == Integer.MAX_VALUE) touched.add(songId);
+            if (score < scores[songId]) scores[songId] = score;
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                scores[touched.values[i]] = Integer.MAX_VALUE;
+            }
+            touched.size = 0;
+        }
+    }
+
+    // Per-thread tables reused by every search, so allocating and clearing them doesn't cost the
+    // size of the library each time
+    private static class Scratch {
+        final ScoreTable anyField = new ScoreTable();
+        final ScoreTable oneField = new ScoreTable();
+        int[] shared = new int[0];
+    }
+
+    // Candidate words of a query word with their scores. The ones of the last queries are kept so
+    // refining a query (typing, backspace) only scores the word that changed
+    private static class ScoredWords {
+        final List<Word> words;
+        final int[] scores;
+
+        ScoredWords(List<Word> words, int[] scores) {
+            this.words = words;
+            this.scores = scores;
+        }
+    }
+
+    private final Map<String, Word> words = new HashMap<>();
+    private final ArrayList<Word> wordsById = new ArrayList<>();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+
+    // Songs by id, removed songs leave a null so postings don't have to be rewritten
+    private final ArrayList<Song> songs = new ArrayList<>();
+    private final Map<Song, Integer> songIds = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static final ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(Scratch::new);
+
+    // Scored candidates kept for the last query words, emptied whenever songs are added
+    private static final int RECENT_WORDS = 64;
+    private final Map<String, ScoredWords> recentWords = Collections.synchronizedMap(
+            new LinkedHashMap<String, ScoredWords>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ScoredWords> eldest) {
+                    return size() > RECENT_WORDS;
+                }
+            });
+
+    public void add(Song song) {
+        lock.writeLock().lock();
+        try {
+            addSong(song);
+            recentWords.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addSong(Song song) {
+        if (songIds.containsKey(song)) return;
+
+        int id = songs.size();
+        songs.add(song);
+        songIds.put(song, id);
+
+        addWords(TITLE, song.getSongTitle(), id);
+        addWords(ARTIST, song.getSongArtist(), id);
+        addWords(ALBUM, song.getSongAlbum(), id);
+    }
+
+    // Words of a field, folded (TextNormalizer), plus their romaji spelling when they are written in
+    // kana so "rabitto" finds "ラビット"
+    private void addWords(int field, String text, int songId) {
+        String folded = TextNormalizer.fold(text);
+        Set<String> fieldWords = new LinkedHashSet<>(tokenize(folded));
+        if (TextNormalizer.containsKana(folded)) {
+            fieldWords.addAll(tokenize(TextNormalizer.romaji(folded)));
+        }
+        for (String word : fieldWords) {
+            word(word).add(field, songId);
+        }
+    }
+
+    public void addAll(Collection<Song> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Song song : batch) {
+                addSong(song);
+            }
+            recentWords.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Song song) {
+        lock.writeLock().lock();
+        try {
+            Integer id = songIds.remove(song);
+            if (id != null) songs.set(id, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            words.clear();
+            wordsById.clear();
+            trigrams.clear();
+            songs.clear();
+            songIds.clear();
+            recentWords.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The k songs closest to the query, best first. A song scores the best match between one of
+    // its words and one of the query words, like SongTree.searchClosestSongs
+    public ArrayList<Song> search(String query, int k) {
+        return search(query, k, () -> false);
+    }
+
+    // Same, giving up (and returning null) as soon as cancelled says so, e.g. when a newer query
+    // replaced this one
+    public ArrayList<Song> search(String query, int k, BooleanSupplier cancelled) {
+        return search(query, k, true, cancelled);
+    }
+
+    // Search run on every keystroke: only the words that look like the query are scored, never the
+    // whole vocabulary, so the cost follows the matches rather than the library
+    public ArrayList<Song> searchAsYouType(String query, int k, BooleanSupplier cancelled) {
+        return search(query, k, false, cancelled);
+    }
+
+    // Whether the query limits a word to a field, like "album:blue"
+    public static boolean hasFieldQualifier(String query) {
+        for (Term term : parse(query)) {
+            if (term.field != ANY_FIELD) return true;
+        }
+        return false;
+    }
+
+    private ArrayList<Song> search(String query, int k, boolean wholeVocabulary, BooleanSupplier cancelled) {
+        List<Term> terms = parse(query);
+        if (terms.isEmpty() || k <= 0) return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Scratch scratch = scratch(songs.size());
+            ArrayList<Song> result = rank(terms, k, false, scratch, cancelled);
+            if (wholeVocabulary && result != null && result.size() < k) {
+                // Nothing looks close enough, fall back to scoring the whole vocabulary (still far
+                // fewer words than songs)
+                result = rank(terms, k, true, scratch, cancelled);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Score the songs for every term and keep the k best. The candidate words are scored once, then
+    // a large library is ranked in ranges of song ids spread over the fork/join pool
+    private ArrayList<Song> rank(List<Term> terms, int k, boolean wholeVocabulary, Scratch scratch,
+                                 BooleanSupplier cancelled) {
+        List<ScoredWords> scoredTerms = new ArrayList<>(terms.size());
+        for (Term term : terms) {
+            ScoredWords scored = wholeVocabulary ? scoreWords(wordsById, term.text, cancelled)
+                    : candidates(term.text, scratch, cancelled);
+            if (scored == null) return null;
+            scoredTerms.add(scored);
+        }
+
+        int songCount = songs.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        SongTree.TopMatches top;
+        if (songCount >= PARALLEL_SONGS && parallelism > 1) {
+            // A few ranges per core so a range with many matches doesn't hold up the others
+            int chunk = Math.max(SONG_CHUNK, songCount / (4 * parallelism) + 1);
+            top = ForkJoinPool.commonPool().invoke(new RankTask(terms, scoredTerms, k, 0, songCount, chunk, cancelled));
+        } else {
+            top = rankRange(terms, scoredTerms, k, 0, songCount, scratch);
+        }
+        return cancelled.getAsBoolean() ? null : top.toList();
+    }
+
+    // Ranks the songs with ids from (inclusive) to (exclusive). Plain terms keep the best score over
+    // all fields, each field term narrows the songs down to the ones matching it in that field
+    private SongTree.TopMatches rankRange(List<Term> terms, List<ScoredWords> scoredTerms, int k,
+                                          int from, int to, Scratch scratch) {
+        ScoreTable anyField = scratch.anyField;
+        ScoreTable oneField = scratch.oneField;
+        boolean hasPlainTerm = false;
+        // Songs matching every field term so far, with the sum of their scores
+        int[] matching = null;
+        int[] totals = null;
+        int matchingCount = 0;
+
+        try {
+            for (int t = 0; t < terms.size(); t++) {
+                Term term = terms.get(t);
+                ScoredWords scored = scoredTerms.get(t);
+
+                if (term.field == ANY_FIELD) {
+                    hasPlainTerm = true;
+                    for (int field = 0; field < FIELD_NAMES.length; field++) {
+                        keepBest(scored, field, anyField, from, to);
+                    }
+                    continue;
+                }
+
+                keepBest(scored, term.field, oneField, from, to);
+                if (matching == null) {
+                    matching = Arrays.copyOf(oneField.touched.values, oneField.touched.size);
+                    totals = new int[matching.length];
+                    for (int i = 0; i < matching.length; i++) {
+                        totals[i] = oneField.scores[matching[i]];
+                    }
+                    matchingCount = matching.length;
+                } else {
+                    int kept = 0;
+                    for (int i = 0; i < matchingCount; i++) {
+                        int score = oneField.scores[matching[i]];
+                        if (score == Integer.MAX_VALUE) continue;
+                        matching[kept] = matching[i];
+                        totals[kept++] = totals[i] + score;
+                    }
+                    matchingCount = kept;
+                }
+                oneField.reset();
+            }
+
+            SongTree.TopMatches top = new SongTree.TopMatches(k);
+            if (matching == null) {
+                for (int i = 0; i < anyField.touched.size; i++) {
+                    int songId = anyField.touched.values[i];
+                    top.offer(songs.get(songId), anyField.scores[songId]);
+                }
+            } else {
+                for (int i = 0; i < matchingCount; i++) {
+                    int plainScore = hasPlainTerm ? anyField.scores[matching[i]] : 0;
+                    if (plainScore == Integer.MAX_VALUE) continue;
+                    top.offer(songs.get(matching[i]), totals[i] + plainScore);
+                }
+            }
+            return top;
+        } finally {
+            anyField.reset();
+            oneField.reset();
+        }
+    }
+
+    // Splits a range of song ids in halves until it is small enough to rank directly, then merges
+    // the top k of both halves. Runs while the searching thread holds the read lock
+    private class RankTask extends RecursiveTask<SongTree.TopMatches> {
+        private final List<Term> terms;
+        private final List<ScoredWords> scoredTerms;
+        private final int k;
+        private final int from, to;
+        private final int chunk;
+        private final BooleanSupplier cancelled;
+
+        RankTask(List<Term> terms, List<ScoredWords> scoredTerms, int k, int from, int to, int chunk,
+                 BooleanSupplier cancelled) {
+            this.terms = terms;
+            this.scoredTerms = scoredTerms;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected SongTree.TopMatches compute() {
+            if (cancelled.getAsBoolean()) return new SongTree.TopMatches(k);
+            if (to - from <= chunk) {
+                // Every worker thread ranks with its own tables
+                return rankRange(terms, scoredTerms, k, from, to, scratch(songs.size()));
+            }
+            int mid = (from + to) >>> 1;
+            RankTask left = new RankTask(terms, scoredTerms, k, from, mid, chunk, cancelled);
+            left.fork();
+            SongTree.TopMatches top = new RankTask(terms, scoredTerms, k, mid, to, chunk, cancelled).compute();
+            top.offerAll(left.join());
+            return top;
+        }
+    }
+
+    private Scratch scratch(int songCount) {
+        Scratch scratch = scratches.get();
+        scratch.anyField.ensureCapacity(songCount);
+        scratch.oneField.ensureCapacity(songCount);
+        if (scratch.shared.length < wordsById.size()) {
+            scratch.shared = new int[wordsById.size() + wordsById.size() / 2];
+        }
+        return scratch;
+    }
+
+    // Scored candidate words of a query word, from the recent ones when possible
+    private ScoredWords candidates(String q, Scratch scratch, BooleanSupplier cancelled) {
+        ScoredWords scored = recentWords.get(q);
+        if (scored == null) {
+            scored = scoreWords(candidateWords(q, scratch), q, cancelled);
+            if (scored != null) recentWords.put(q, scored);
+        }
+        return scored;
+    }
+
+    // Words sharing enough trigrams with the query word to be within a few edits of it, or to
+    // contain it
+    private List<Word> candidateWords(String q, Scratch scratch) {
+        List<String> grams = trigrams(q);
+        int maxEdits = Math.max(1, q.length() / 4);
+        // Every edit changes at most 3 trigrams
+        int threshold = Math.max(1, grams.size() - 3 * maxEdits);
+
+        int[] shared = scratch.shared;
+        List<Word> candidates = new ArrayList<>();
+        for (String gram : grams) {
+            IntList wordIds = trigrams.get(gram);
+            if (wordIds == null) continue;
+            for (int i = 0; i < wordIds.size; i++) {
+                int wordId = wordIds.values[i];
+                if (++shared[wordId] == threshold) {
+                    candidates.add(wordsById.get(wordId));
+                }
+            }
+        }
+        // Put the counters back to 0 for the next search
+        for (String gram : grams) {
+            IntList wordIds = trigrams.get(gram);
+            if (wordIds == null) continue;
+            for (int i = 0; i < wordIds.size; i++) {
+                shared[wordIds.values[i]] = 0;
+            }
+        }
+        return candidates;
+    }
+
+    // Score the words against q. The edit distances of a long list (the whole vocabulary) are
+    // spread over the fork/join pool. Returns null when cancelled
+    private ScoredWords scoreWords(List<Word> candidates, String q, BooleanSupplier cancelled) {
+        int[] scores = new int[candidates.size()];
+        IntStream indexes = IntStream.range(0, scores.length);
+        if (scores.length >= PARALLEL_WORDS) indexes = indexes.parallel();
+        indexes.forEach(i -> {
+            if (!cancelled.getAsBoolean()) scores[i] = SongTree.wordScore(candidates.get(i).text, q);
+        });
+        return cancelled.getAsBoolean() ? null : new ScoredWords(candidates, scores);
+    }
+
+    // Keep the best score of every song with an id from from to to the scored words appear in,
+    // within one field
+    private void keepBest(ScoredWords scored, int field, ScoreTable table, int from, int to) {
+        for (int w = 0; w < scored.scores.length; w++) {
+            IntList postings = scored.words.get(w).postings[field];
+            if (postings == null) continue;
+
+            int score = scored.scores[w] + FIELD_PENALTY[field];
+            // Postings are sorted, only the part inside the range is visited
+            int i = (from == 0) ? 0 : lowerBound(postings, from);
+            for (; i < postings.size; i++) {
+                int songId = postings.values[i];
+                if (songId >= to) break;
+                if (songs.get(songId) != null) table.keepMin(songId, score);
+            }
+        }
+    }
+
+    // First position of the list holding a value >= value
+    private static int lowerBound(IntList list, int value) {
+        int low = 0;
+        int high = list.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Word word(String text) {
+        Word word = words.get(text);
+        if (word == null) {
+            word = new Word(text, wordsById.size());
+            words.put(text, word);
+            wordsById.add(word);
+            for (String gram : new LinkedHashSet<>(trigrams(text))) {
+                trigrams.computeIfAbsent(gram, g -> new IntList()).add(word.id);
+            }
+        }
+        return word;
+    }
+
+    // Query words, the ones following "title:", "artist:" or "album:" are limited to that field
+    private static List<Term> parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        if (query == null) return terms;
+
+        for (String part : query.trim().split("\\s+")) {
+            int field = ANY_FIELD;
+            int colon = part.indexOf(':');
+            if (colon > 0) {
+                String name = part.substring(0, colon).toLowerCase();
+                for (int i = 0; i < FIELD_NAMES.length; i++) {
+                    if (FIELD_NAMES[i].equals(name)) field = i;
+                }
+                if (field != ANY_FIELD) part = part.substring(colon + 1);
+            }
+            for (String word : tokenize(TextNormalizer.fold(part))) {
+                terms.add(new Term(word, field));
+            }
+        }
+        return terms;
+    }
+
+    // Lowercase words, split on anything that is not a letter or a digit
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean letter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> trigrams(String word) {
+        String padded = WORD_START + word + WORD_END;
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
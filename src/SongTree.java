@@ -1,4 +1,6 @@
 import javax.swing.plaf.synth.SynthTextAreaUI;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.*;
 import java.io.File;
 
@@ -12,9 +14,11 @@ class SongMatch implements Comparable<SongMatch> {
         this.score = score;
     }
 
+    // Lower score first, equal scores by title
     @Override
     public int compareTo(SongMatch other) {
-        return Integer.compare(this.score, other.score);
+        int result = Integer.compare(this.score, other.score);
+        return (result != 0) ? result : song.getSongTitle().compareTo(other.song.getSongTitle());
     }
 
     @Override
@@ -23,23 +27,132 @@ class SongMatch implements Comparable<SongMatch> {
     }
 }
 
-class ClosestTracker {
-    Node pred = null;
-    Node succ = null;
+// Sort key of a title, computed once: case and leading articles are removed and a collation key
+// orders accented and Japanese titles the way the locale expects. Comparing two keys allocates nothing.
+class SortKey implements Comparable<SortKey> {
+    // Collators are not thread safe, one per thread lets bulk loads build keys in parallel
+    private static final ThreadLocal<Collator> collator = ThreadLocal.withInitial(Collator::getInstance);
+    // Same order ignoring accents and case, "e" and "é" are equal for it
+    private static final ThreadLocal<Collator> primaryCollator = ThreadLocal.withInitial(() -> {
+        Collator primary = Collator.getInstance();
+        primary.setStrength(Collator.PRIMARY);
+        return primary;
+    });
+
+    final String normalized;
+    final CollationKey collationKey;
+    // Keeps songs with the same title apart (file path, empty for search queries)
+    final String tieBreak;
+
+    SortKey(String title, String tieBreak) {
+        this.normalized = normalize(title == null ? "" : title);
+        this.tieBreak = tieBreak;
+        this.collationKey = collator.get().getCollationKey(normalized);
+    }
+
+    static SortKey of(Song song) {
+        return new SortKey(song.getSongTitle(), song.getFilePath());
+    }
+
+    // Key for a search query, compareTitle() on it ignores the tie break
+    static SortKey forQuery(String query) {
+        return new SortKey(query, "");
+    }
+
+    // Ignore capitalization, width and kana script (TextNormalizer.fold) and articles like "The",
+    // "A", or "An" when sorting
+    static String normalize(String title) {
+        title = TextNormalizer.fold(title).trim();
+        if (title.startsWith("the ")) {
+            return title.substring(4);
+        } else if (title.startsWith("a ")) {
+            return title.substring(2);
+        } else if (title.startsWith("an ")) {
+            return title.substring(3);
+        }
+        return title;
+    }
+
+    // Whether the title starts with the query, ignoring accents like the sort order does, so all
+    // titles starting with a prefix sit next to each other in the tree
+    boolean startsWith(SortKey prefix) {
+        int length = prefix.normalized.length();
+        return normalized.length() >= length
+                && primaryCollator.get().compare(normalized.substring(0, length), prefix.normalized) == 0;
+    }
+
+    int compareTitle(SortKey other) {
+        int result = collationKey.compareTo(other.collationKey);
+        return (result != 0) ? result : normalized.compareTo(other.normalized);
+    }
+
+    @Override
+    public int compareTo(SortKey other) {
+        int result = compareTitle(other);
+        return (result != 0) ? result : tieBreak.compareTo(other.tieBreak);
+    }
 }
 
 class Node {
     Song key;
+    SortKey sortKey;
     int height;
+    // Number of nodes in the subtree rooted here, for rank and select
+    int size;
     Node left, right;
 
-    Node(Song key) {
+    Node(Song key, SortKey sortKey) {
         this.key = key;
+        this.sortKey = sortKey;
         this.height = 1;
+        this.size = 1;
     }
 }
 
-public class SongTree implements Comparator<Song> {
+public class SongTree implements Comparator<Song>, Iterable<Song> {
+
+    // Batches at least this large get their keys built and sorted in parallel
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    // The k best matches seen so far, in a max-heap bounded to k so the worst one is dropped first
+    static class TopMatches {
+        private final int k;
+        private final PriorityQueue<SongMatch> heap;
+
+        TopMatches(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<>(Math.max(1, k + 1), Comparator.reverseOrder());
+        }
+
+        // Highest score that can still make it in, scoring can stop once it is exceeded
+        int cutoff() {
+            return (heap.size() < k) ? Integer.MAX_VALUE - 1 : heap.peek().score;
+        }
+
+        void offer(Song song, int score) {
+            if (k <= 0 || score > cutoff()) return;
+            heap.add(new SongMatch(song, score));
+            if (heap.size() > k) heap.poll();
+        }
+
+        // Merge the matches kept by a search over another part of the library
+        void offerAll(TopMatches other) {
+            for (SongMatch match : other.heap) {
+                offer(match.song, match.score);
+            }
+        }
+
+        // Best first
+        ArrayList<Song> toList() {
+            SongMatch[] matches = heap.toArray(new SongMatch[0]);
+            Arrays.sort(matches);
+            ArrayList<Song> songs = new ArrayList<>(matches.length);
+            for (SongMatch match : matches) {
+                songs.add(match.song);
+            }
+            return songs;
+        }
+    }
 
     Node root;
 
@@ -50,6 +163,19 @@ public class SongTree implements Comparator<Song> {
         return node.height;
     }
 
+    // Get the number of nodes in the subtree
+    int size(Node node) {
+        if (node == null)
+            return 0;
+        return node.size;
+    }
+
+    // Recompute height and size of a node from its children
+    void update(Node node) {
+        node.height = max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
     // Get maximum of two integers
     int max(int a, int b) {
         return (a > b) ? a : b;
@@ -60,33 +186,10 @@ public class SongTree implements Comparator<Song> {
         return (a < b) ? a : b;
     }
 
+    // Tree operations compare the precomputed keys of the nodes, this builds new keys
     @Override
     public int compare(Song s1, Song s2) {
-        return normalize(s1.getSongTitle()).compareTo(normalize(s2.getSongTitle()));
-    }
-
-
-    public int compare(String s1, Song s2) {
-        String toLower = s1.toLowerCase();
-        if (toLower.contains("the ")
-                || toLower.contains("a ")
-                || toLower.contains("an ")) {
-            return toLower.compareTo(s2.getSongTitle().toLowerCase().trim());
-        }
-        return normalize(s1).compareTo(normalize(s2.getSongTitle()));
-    }
-
-    // Ignore capitalization and articles like "The", "A", or "An" when sorting
-    private String normalize(String title) {
-        title = title.toLowerCase().trim();
-        if (title.startsWith("the ")) {
-            return title.substring(4);
-        } else if (title.startsWith("a ")) {
-            return title.substring(2);
-        } else if (title.startsWith("an ")) {
-            return title.substring(3);
-        }
-        return title;
+        return SortKey.of(s1).compareTo(SortKey.of(s2));
     }
 
     // Right rotate subtree rooted with node
@@ -98,9 +201,9 @@ public class SongTree implements Comparator<Song> {
         leftChild.right = node;
         node.left = temp;
 
-        // Update heights
-        node.height = max(height(node.left), height(node.right)) + 1;
-        leftChild.height = max(height(leftChild.left), height(leftChild.right)) + 1;
+        // Update heights and sizes
+        update(node);
+        update(leftChild);
 
         // Return new root
         return leftChild;
@@ -115,9 +218,9 @@ public class SongTree implements Comparator<Song> {
         rightChild.left = node;
         node.right = temp;
 
-        // Update heights
-        node.height = max(height(node.left), height(node.right)) + 1;
-        rightChild.height = max(height(rightChild.left), height(rightChild.right)) + 1;
+        // Update heights and sizes
+        update(node);
+        update(rightChild);
 
         // Return new root
         return rightChild;
@@ -131,40 +234,37 @@ public class SongTree implements Comparator<Song> {
     }
 
     // Insert a key into the AVL tree and return the new root of the subtree
-    Node insert(Node root, Song key) {
+    Node insert(Node root, Song key, SortKey sortKey) {
         if (root == null)
-            return new Node(key);
-
+            return new Node(key, sortKey);
 
-        if (compare(key, root.key) < 0)
-            root.left = insert(root.left, key);
-        else if (compare(key, root.key) >= 0)
-            root.right = insert(root.right, key);
+        if (sortKey.compareTo(root.sortKey) < 0)
+            root.left = insert(root.left, key, sortKey);
         else
-            return root;
+            root.right = insert(root.right, key, sortKey);
 
-        // Update height of root
-        root.height = 1 + max(height(root.left), height(root.right));
+        // Update height and size of root
+        update(root);
 
         // Get balance factor
         int balance = getBalance(root);
 
         // Left Left Case
-        if (balance > 1 && compare(key, root.left.key) < 0)
+        if (balance > 1 && sortKey.compareTo(root.left.sortKey) < 0)
             return rightRotate(root);
 
         // Right Right Case
-        if (balance < -1 && compare(key, root.right.key) >= 0)
+        if (balance < -1 && sortKey.compareTo(root.right.sortKey) >= 0)
             return leftRotate(root);
 
         // Left Right Case
-        if (balance > 1 && compare(key, root.left.key) >= 0) {
+        if (balance > 1 && sortKey.compareTo(root.left.sortKey) >= 0) {
             root.left = leftRotate(root.left);
             return rightRotate(root);
         }
 
         // Right Left Case
-        if (balance < -1 && compare(key, root.right.key) < 0) {
+        if (balance < -1 && sortKey.compareTo(root.right.sortKey) < 0) {
             root.right = rightRotate(root.right);
             return leftRotate(root);
         }
@@ -173,7 +273,81 @@ public class SongTree implements Comparator<Song> {
     }
 
     public void insert(Song key){
-        root = insert(root, key);
+        root = insert(root, key, SortKey.of(key));
+    }
+
+    public void clear(){
+        root = null;
+    }
+
+    public int size(){
+        return size(root);
+    }
+
+    // Replace the content of the tree with these songs: sorted once, then linked into a perfectly
+    // balanced tree in O(n) without any rotation
+    public void build(Collection<Song> songs){
+        root = buildBalanced(sortedNodes(songs), 0, songs.size() - 1);
+    }
+
+    // Add a batch of songs. A small batch is inserted one by one, a large one is sorted and merged
+    // with the nodes of the tree in a single pass before rebuilding it balanced
+    public void insertAll(Collection<Song> songs){
+        if (songs.isEmpty()) return;
+
+        // k inserts cost k log n, the merge costs n + k
+        int n = size();
+        if ((long) songs.size() * (32 - Integer.numberOfLeadingZeros(n + 1)) < n) {
+            for (Song song : songs) {
+                insert(song);
+            }
+            return;
+        }
+
+        ArrayList<Node> existing = new ArrayList<>(n);
+        for (Cursor cursor = first(); cursor.isValid(); cursor.next()) {
+            existing.add(cursor.path[cursor.depth - 1]);
+        }
+        n = existing.size();
+
+        Node[] added = sortedNodes(songs);
+        Node[] merged = new Node[n + added.length];
+        int i = 0, j = 0, k = 0;
+        while (i < n && j < added.length) {
+            merged[k++] = (added[j].sortKey.compareTo(existing.get(i).sortKey) < 0) ? added[j++] : existing.get(i++);
+        }
+        while (i < n) merged[k++] = existing.get(i++);
+        while (j < added.length) merged[k++] = added[j++];
+
+        root = buildBalanced(merged, 0, merged.length - 1);
+    }
+
+    // New nodes for the songs, sorted by key
+    private Node[] sortedNodes(Collection<Song> songs){
+        boolean parallel = songs.size() >= PARALLEL_THRESHOLD;
+        Node[] nodes = (parallel ? songs.parallelStream() : songs.stream())
+                .map(song -> new Node(song, SortKey.of(song)))
+                .toArray(Node[]::new);
+
+        Comparator<Node> byKey = (a, b) -> a.sortKey.compareTo(b.sortKey);
+        if (parallel) {
+            Arrays.parallelSort(nodes, byKey);
+        } else {
+            Arrays.sort(nodes, byKey);
+        }
+        return nodes;
+    }
+
+    // Link sorted nodes into a balanced subtree, the middle node becomes its root
+    private Node buildBalanced(Node[] nodes, int from, int to){
+        if (from > to) return null;
+
+        int middle = (from + to) >>> 1;
+        Node node = nodes[middle];
+        node.left = buildBalanced(nodes, from, middle - 1);
+        node.right = buildBalanced(nodes, middle + 1, to);
+        update(node);
+        return node;
     }
 
     // Find the node with the minimum key in a subtree
@@ -193,14 +367,15 @@ public class SongTree implements Comparator<Song> {
     }
 
     // Delete a key from the AVL tree and return the new root of the subtree
-    Node delete(Node root, Song key) {
+    Node delete(Node root, SortKey sortKey) {
         if (root == null)
             return root;
-        // Standard BST delete
-        if (compare(key, root.key) < 0)
-            root.left = delete(root.left, key);
-        else if (compare(key, root.key) > 0)
-            root.right = delete(root.right, key);
+        // Standard BST delete, the tie break finds the exact song among equal titles
+        int cmp = sortKey.compareTo(root.sortKey);
+        if (cmp < 0)
+            root.left = delete(root.left, sortKey);
+        else if (cmp > 0)
+            root.right = delete(root.right, sortKey);
         else {
             // Node with only one child or no child
             if (root.left == null)
@@ -211,10 +386,11 @@ public class SongTree implements Comparator<Song> {
             // Node with two children
             Node temp = minValueNode(root.right);
             root.key = temp.key;
-            root.right = delete(root.right, temp.key);
+            root.sortKey = temp.sortKey;
+            root.right = delete(root.right, temp.sortKey);
         }
-        // Update height of the current node
-        root.height = 1 + max(height(root.left), height(root.right));
+        // Update height and size of the current node
+        update(root);
         // Get balance factor
         int balance = getBalance(root);
 
@@ -241,16 +417,21 @@ public class SongTree implements Comparator<Song> {
     }
 
     public void delete(Song key) {
-        root = delete(root, key);
+        root = delete(root, SortKey.of(key));
     }
 
     // Search for song title
-    Node search(Node root, String key){
-        if (root == null || compare(key, root.key) == 0){
+    Node search(Node root, SortKey key){
+        if (root == null){
+            return root;
+        }
+
+        int cmp = key.compareTitle(root.sortKey);
+        if (cmp == 0){
             return root;
         }
 
-        if (compare(key, root.key) < 0){
+        if (cmp < 0){
             return search(root.left, key);
         }
 
@@ -258,7 +439,7 @@ public class SongTree implements Comparator<Song> {
     }
 
     public void search(String key){
-        root = search(root, key);
+        root = search(root, SortKey.forQuery(key));
         if (root == null){
             System.out.println("No song found");
         }
@@ -267,154 +448,438 @@ public class SongTree implements Comparator<Song> {
         }
     }
 
-    void findClosest(Node root, String query, ClosestTracker tracker) {
-        if (root == null) return;
-
-        if (compare(query, root.key) < 0) {
-            tracker.succ = root;
-            findClosest(root.left, query, tracker);
-        } else if (compare(query, root.key) >= 0) {
-            tracker.pred = root;
-            findClosest(root.right, query, tracker);
-        } else {
-            tracker.pred = maxValueNode(root.left);
-            tracker.succ = minValueNode(root.right);
-        }
-    }
-
     // Search the k nearest lexicographical song compared to the query
     public ArrayList<Song> searchNearestLexico(String query, int k){
-        ClosestTracker tracker = new ClosestTracker();
-        findClosest(root, query, tracker);
+        // Songs just before and just after the query, then walk away from it in both directions
+        SortKey key = SortKey.forQuery(query);
+        Cursor pred = floor(key, true);
+        Cursor succ = ceiling(key, false);
 
         ArrayList<Song> result = new ArrayList<>();
-        if (tracker.pred != null) result.add(tracker.pred.key);
-        if (tracker.succ != null) result.add(tracker.succ.key);
-
-        Node pred = tracker.pred;
-        Node succ = tracker.succ;
+        if (pred.isValid()) result.add(pred.get());
+        if (succ.isValid()) result.add(succ.get());
 
-        while (result.size() < k && (pred != null || succ != null)) {
-            if (pred != null) {
-                pred = getPredecessor(root, pred.key.getSongTitle());
-                if (pred != null) result.add(pred.key);
+        while (result.size() < k && (pred.isValid() || succ.isValid())) {
+            if (pred.isValid()) {
+                pred.previous();
+                if (pred.isValid()) result.add(pred.get());
             }
             if (result.size() >= k) break;
-            if (succ != null) {
-                succ = getSuccessor(root, succ.key.getSongTitle());
-                if (succ != null) result.add(succ.key);
+            if (succ.isValid()) {
+                succ.next();
+                if (succ.isValid()) result.add(succ.get());
             }
         }
 
         return result;
     }
 
-    Node getPredecessor(Node root, String key) {
-        Node pred = null;
-        while (root != null) {
-            if (compare(key, root.key) > 0) {
-                pred = root;
-                root = root.right;
+    // Rows for the edit distance, reused so scoring doesn't allocate
+    private static final ThreadLocal<int[][]> distanceRows = ThreadLocal.withInitial(() -> new int[2][32]);
+
+    // Levenshtein Distance Algorithm to Get String similarity score
+    static int levenshteinDistance(String a, String b) {
+        return levenshteinDistance(a, 0, a.length(), b, Integer.MAX_VALUE - 1);
+    }
+
+    // Edit distance between a[from, to) (ignoring case) and b, keeping only two rows of the table.
+    // Only cells within max of the diagonal are computed, and as soon as a whole row is above max
+    // the answer is known to be too far: max + 1 is returned
+    static int levenshteinDistance(String a, int from, int to, String b, int max) {
+        int n = to - from;
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        if (n == 0 || m == 0) return Math.max(n, m);
+        // The distance is never more than the longer length
+        max = Math.min(max, Math.max(n, m));
+
+        int[][] rows = distanceRows.get();
+        if (rows[0].length <= m) {
+            rows = new int[2][m + 1];
+            distanceRows.set(rows);
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        int tooFar = max + 1;
+
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, tooFar);
+        }
+
+        for (int i = 1; i <= n; i++) {
+            char c = Character.toLowerCase(a.charAt(from + i - 1));
+            int bandStart = Math.max(1, i - max);
+            int bandEnd = Math.min(m, i + max);
+
+            current[0] = Math.min(i, tooFar);
+            if (bandStart > 1) current[bandStart - 1] = tooFar;
+            int rowMin = (bandStart == 1) ? current[0] : tooFar;
+
+            for (int j = bandStart; j <= bandEnd; j++) {
+                int cost = (c == b.charAt(j - 1)) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, tooFar);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // Right edge of the band, read by the next row
+            if (bandEnd < m) current[bandEnd + 1] = tooFar;
+            if (rowMin > max) return tooFar;
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[m];
+    }
+
+    // Score the songs based on each word's similarity using Levenshtein Distance. Works on the
+    // title in place (no lowercased copy or split) and stops looking at a word once it cannot beat
+    // cutoff, in which case the result is above cutoff
+    private static int similarityScore(String query, String[] wordsQuery, String title, int cutoff) {
+        String trimmed = title.trim();
+        if (trimmed.length() == query.length() && trimmed.equalsIgnoreCase(query)) {
+            return 0; // Perfect Match
+        }
+
+        int minValue = cutoff + 1;
+        int wordStart = 0;
+        for (int i = 0; i <= title.length(); i++) {
+            if (i < title.length() && title.charAt(i) != ' ') continue;
+
+            for (String q : wordsQuery) {
+                int value = wordScore(title, wordStart, i, q, minValue - 1);
+                if (value == 0) {
+                    return 0;
+                }
+                minValue = Math.min(minValue, value);
+            }
+            wordStart = i + 1;
+        }
+
+        return minValue;
+    }
+
+    // Score of a single title word against a query word, 0 is a perfect match. Shared with the
+    // search index so both rank songs the same way
+    static int wordScore(String word, String q) {
+        return wordScore(word, 0, word.length(), q, Integer.MAX_VALUE - 1);
+    }
+
+    // Same for the word text[from, to) compared ignoring case with the lowercase q, anything worse
+    // than cutoff comes back as cutoff + 1
+    static int wordScore(String text, int from, int to, String q, int cutoff) {
+        int length = to - from;
+        if (length >= q.length()) {
+            // A word containing the query (or equal to it) scores by how much longer it is
+            for (int start = from; start + q.length() <= to; start++) {
+                if (text.regionMatches(true, start, q, 0, q.length())) {
+                    return (length - q.length()) / 2;
+                }
+            }
+        }
+        return levenshteinDistance(text, from, to, q, Math.max(0, cutoff));
+    }
+
+    // Search the k closest song compared to the query
+    public ArrayList<Song> searchClosestSongs(String query, int k){
+        String toLower = TextNormalizer.fold(query).trim();
+        String[] wordsQuery = toLower.split(" ");
+
+        // Only the k best are kept, and a song stops being scored once it cannot beat the worst of them
+        TopMatches top = new TopMatches(k);
+        for (Song song : this) {
+            int cutoff = top.cutoff();
+            int score = similarityScore(toLower, wordsQuery, song.getSearchTitle(), cutoff);
+            if (score <= cutoff) top.offer(song, score);
+        }
+        return top.toList();
+    }
+
+    public ArrayList<Song> getSortedSongList(){
+        ArrayList<Song> songs = new ArrayList<>(size());
+        for (Cursor cursor = first(); cursor.isValid(); cursor.next()) {
+            songs.add(cursor.get());
+        }
+        return songs;
+    }
+
+    // Song at this position in the sorted order, O(log n)
+    public Song select(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.key;
             } else {
-                root = root.left;
+                index -= leftSize + 1;
+                node = node.right;
             }
         }
-        return pred;
     }
 
-    Node getSuccessor(Node root, String key) {
-        Node succ = null;
-        while (root != null) {
-            if (compare(key, root.key) < 0) {
-                succ = root;
-                root = root.left;
+    // Position of the song in the sorted order, or -1 if it is not in the tree
+    public int rank(Song song) {
+        SortKey key = SortKey.of(song);
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.sortKey);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
             } else {
-                root = root.right;
+                return rank + size(node.left);
             }
         }
-        return succ;
+        return -1;
     }
 
-    // Add the song's score to the priority queue for ranking
-    private void collectMatches(Node node, String query, PriorityQueue<SongMatch> pq) {
-        if (node == null) return;
+    // Number of songs whose title sorts before the key
+    int countBefore(SortKey key) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (key.compareTitle(node.sortKey) > 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
 
-        collectMatches(node.left, query, pq);
+    // Number of songs whose title is between from (inclusive) and to (exclusive)
+    public int countRange(String from, String to) {
+        return Math.max(0, countBefore(SortKey.forQuery(to)) - countBefore(SortKey.forQuery(from)));
+    }
 
-        int score = similarityScore(query, node.key);
-        pq.offer(new SongMatch(node.key, score));
+    // Next position from start on whose title starts with the prefix, wrapping around, or -1. The
+    // matches are next to each other in the sorted order, so this is start itself when it is one of
+    // them, otherwise the first match going forward or the last one going backward
+    public int nextIndexOfPrefix(String prefix, int start, boolean backward) {
+        SortKey key = SortKey.forQuery(prefix);
+        int first = countBeforePrefix(key, false);
+        int end = countBeforePrefix(key, true);
+        if (first >= end) return -1;
+        if (start >= first && start < end) return start;
+        return backward ? end - 1 : first;
+    }
 
-        collectMatches(node.right, query, pq);
+    // Songs whose title starts with the prefix (ignoring accents), as a view of the sorted order
+    // found with two descents of the tree. Like any subList it is only valid until the tree changes
+    public List<Song> prefixRange(String prefix) {
+        SortKey key = SortKey.forQuery(prefix);
+        int start = countBeforePrefix(key, false);
+        int end = countBeforePrefix(key, true);
+        return asList().subList(start, Math.max(start, end));
     }
 
-    // Levenshtein Distance Algorithm to Get String similarity score
-    int levenshteinDistance(String a, String b) {
-        int[][] dp = new int[a.length() + 1][b.length() + 1];
-
-        for (int i = 0; i <= a.length(); i++) {
-            for (int j = 0; j <= b.length(); j++) {
-                if (i == 0) dp[i][j] = j;
-                else if (j == 0) dp[i][j] = i;
-                else if (a.charAt(i - 1) == b.charAt(j - 1))
-                    dp[i][j] = dp[i - 1][j - 1];
-                else
-                    dp[i][j] = 1 + Math.min(dp[i - 1][j - 1],
-                            Math.min(dp[i - 1][j], dp[i][j - 1]));
+    // Number of songs sorting before the titles starting with the prefix, or through them
+    private int countBeforePrefix(SortKey prefix, boolean through) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            boolean before = node.sortKey.startsWith(prefix) ? through : prefix.compareTitle(node.sortKey) > 0;
+            if (before) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
             }
         }
+        return count;
+    }
+
+    // Read-only list view of the tree in sorted order. get() is a select, nothing is copied and
+    // the view follows later changes to the tree
+    public List<Song> asList() {
+        return new AbstractList<Song>() {
+            @Override
+            public Song get(int index) {
+                return select(index);
+            }
 
-        return dp[a.length()][b.length()];
+            @Override
+            public int size() {
+                return SongTree.this.size();
+            }
+
+            @Override
+            public int indexOf(Object o) {
+                return (o instanceof Song song) ? rank(song) : -1;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+
+            @Override
+            public Iterator<Song> iterator() {
+                return SongTree.this.iterator();
+            }
+        };
     }
 
+    // Position in the sorted order that can move both ways. It keeps the path from the root, so a
+    // step to a neighbour is O(1) amortized and never searches from the root again.
+    // A cursor is only valid until the tree is modified
+    public class Cursor {
+        private final Node[] path;
+        // The current node is path[depth - 1], no current song when depth is 0
+        private int depth;
 
-    // Score the songs based on each word's similarity using Levenshtein Distance
-    private int similarityScore(String query, Song song) {
-        String toLower = query.toLowerCase().trim();
-        String toLowerSong = song.getSongTitle().toLowerCase().trim();
+        private Cursor() {
+            path = new Node[height(root)];
+        }
 
-        if (toLowerSong.equals(toLower)) {
-            return 0; // Perfect Match
+        private Cursor(Cursor other) {
+            path = other.path.clone();
+            depth = other.depth;
         }
 
-        String[] words = toLowerSong.split(" ");
-        String[] wordsQuery = toLower.split(" ");
+        public boolean isValid() {
+            return depth > 0;
+        }
 
-        int minValue = Integer.MAX_VALUE;
+        public Song get() {
+            return path[depth - 1].key;
+        }
 
-        for (String q : wordsQuery) {
-            for (String word : words) {
-                if (word.equals(q)) {
-                    return 0;
-                }
-                if (word.contains(q)) {
-                    int value = (word.length() - q.length()) / 2;
-                    minValue = min(value, minValue);
-                }
-                minValue = min(minValue, levenshteinDistance(word, q));
+        SortKey getSortKey() {
+            return path[depth - 1].sortKey;
+        }
+
+        public Cursor copy() {
+            return new Cursor(this);
+        }
+
+        // Move to the next song, the cursor becomes invalid after the last one
+        public void next() {
+            Node node = path[depth - 1];
+            if (node.right != null) {
+                descend(node.right, true);
+                return;
+            }
+            // Climb while we come from a right child, the first parent reached from the left is next
+            while (depth > 1 && path[depth - 2].right == path[depth - 1]) {
+                depth--;
             }
+            depth--;
         }
 
-        return minValue;
+        // Move to the previous song, the cursor becomes invalid before the first one
+        public void previous() {
+            Node node = path[depth - 1];
+            if (node.left != null) {
+                descend(node.left, false);
+                return;
+            }
+            while (depth > 1 && path[depth - 2].left == path[depth - 1]) {
+                depth--;
+            }
+            depth--;
+        }
+
+        // Push node and then follow its left (or right) children to the end
+        private void descend(Node node, boolean leftmost) {
+            while (node != null) {
+                path[depth++] = node;
+                node = leftmost ? node.left : node.right;
+            }
+        }
     }
 
-    // Search the k closest song compared to the query
-    public ArrayList<Song> searchClosestSongs(String query, int k){
-        PriorityQueue<SongMatch> pq = new PriorityQueue<>();
-        collectMatches(root, query, pq);
+    public Cursor first() {
+        Cursor cursor = new Cursor();
+        cursor.descend(root, true);
+        return cursor;
+    }
 
-        ArrayList<Song> result = new ArrayList<>();
-        int count = 0;
-        while (!pq.isEmpty() && count < k) {
-            result.add(pq.poll().song);
-            count++;
+    public Cursor last() {
+        Cursor cursor = new Cursor();
+        cursor.descend(root, false);
+        return cursor;
+    }
+
+    // Cursor on the first song whose title comes at or after this one
+    public Cursor cursorAt(String title) {
+        return ceiling(SortKey.forQuery(title), true);
+    }
+
+    // Cursor on the first song after the key by title (or equal to it when inclusive)
+    Cursor ceiling(SortKey key, boolean inclusive) {
+        Cursor cursor = new Cursor();
+        int found = 0;
+        for (Node node = root; node != null; ) {
+            cursor.path[cursor.depth++] = node;
+            int cmp = key.compareTitle(node.sortKey);
+            if (cmp < 0 || (inclusive && cmp == 0)) {
+                found = cursor.depth;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
         }
-        return result;
+        // The path to the candidate is a prefix of the path we walked
+        cursor.depth = found;
+        return cursor;
+    }
+
+    // Cursor on the last song before the key by title (or equal to it when inclusive)
+    Cursor floor(SortKey key, boolean inclusive) {
+        Cursor cursor = new Cursor();
+        int found = 0;
+        for (Node node = root; node != null; ) {
+            cursor.path[cursor.depth++] = node;
+            int cmp = key.compareTitle(node.sortKey);
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                found = cursor.depth;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        cursor.depth = found;
+        return cursor;
     }
 
-    public ArrayList<Song> getSortedSongList(){
-        ArrayList<Song> songs = new ArrayList<>();
-        inOrder(root, songs);
-        return songs;
+    // Songs whose title is between from (inclusive) and to (exclusive), e.g. range("m", "n") for
+    // every title starting with M. Walks the tree lazily without building a list
+    public Iterable<Song> range(String from, String to) {
+        SortKey fromKey = SortKey.forQuery(from);
+        SortKey toKey = SortKey.forQuery(to);
+        return () -> iterate(ceiling(fromKey, true), toKey);
+    }
+
+    @Override
+    public Iterator<Song> iterator() {
+        return iterate(first(), null);
+    }
+
+    private Iterator<Song> iterate(Cursor cursor, SortKey end) {
+        return new Iterator<Song>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.isValid() && (end == null || cursor.getSortKey().compareTitle(end) < 0);
+            }
+
+            @Override
+            public Song next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Song song = cursor.get();
+                cursor.next();
+                return song;
+            }
+        };
     }
 
 
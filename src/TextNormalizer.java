@@ -0,0 +1,134 @@
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+// Folds titles, artists and queries into one form for searching and sorting, so the same text
+// written in another width or kana script compares equal:
+//   NFKC       full-width Latin becomes ASCII, half-width katakana becomes full-width
+//   lowercase
+//   kana       katakana becomes hiragana ("ラビット" and "らびっと" are the same word)
+// romaji() additionally spells kana in Latin letters, so a Japanese title can be found by typing
+// it the way it sounds. Kanji are kept as they are. Both are meant to run once when a song is
+// indexed, not per query.
+public class TextNormalizer {
+
+    private static final char KATAKANA_FIRST = 'ァ';
+    private static final char KATAKANA_LAST = 'ヶ';
+    private static final int KATAKANA_TO_HIRAGANA = 0x60;
+
+    private static final char SMALL_TSU = 'っ';
+    private static final char LONG_VOWEL = 'ー';
+
+    // Hepburn spelling of every hiragana, small ones included
+    private static final Map<Character, String> ROMAJI = new HashMap<>();
+
+    static {
+        String[] table = {
+                "あ", "a", "い", "i", "う", "u", "え", "e", "お", "o",
+                "か", "ka", "き", "ki", "く", "ku", "け", "ke", "こ", "ko",
+                "が", "ga", "ぎ", "gi", "ぐ", "gu", "げ", "ge", "ご", "go",
+                "さ", "sa", "し", "shi", "す", "su", "せ", "se", "そ", "so",
+                "ざ", "za", "じ", "ji", "ず", "zu", "ぜ", "ze", "ぞ", "zo",
+                "た", "ta", "ち", "chi", "つ", "tsu", "て", "te", "と", "to",
+                "だ", "da", "ぢ", "ji", "づ", "zu", "で", "de", "ど", "do",
+                "な", "na", "に", "ni", "ぬ", "nu", "ね", "ne", "の", "no",
+                "は", "ha", "ひ", "hi", "ふ", "fu", "へ", "he", "ほ", "ho",
+                "ば", "ba", "び", "bi", "ぶ", "bu", "べ", "be", "ぼ", "bo",
+                "ぱ", "pa", "ぴ", "pi", "ぷ", "pu", "ぺ", "pe", "ぽ", "po",
+                "ま", "ma", "み", "mi", "む", "mu", "め", "me", "も", "mo",
+                "や", "ya", "ゆ", "yu", "よ", "yo",
+                "ら", "ra", "り", "ri", "る", "ru", "れ", "re", "ろ", "ro",
+                "わ", "wa", "ゐ", "i", "ゑ", "e", "を", "o", "ん", "n", "ゔ", "vu",
+                "ぁ", "a", "ぃ", "i", "ぅ", "u", "ぇ", "e", "ぉ", "o",
+                "ゃ", "ya", "ゅ", "yu", "ょ", "yo", "ゎ", "wa", "ゕ", "ka", "ゖ", "ke",
+        };
+        for (int i = 0; i < table.length; i += 2) {
+            ROMAJI.put(table[i].charAt(0), table[i + 1]);
+        }
+    }
+
+    private TextNormalizer() {
+    }
+
+    public static String fold(String text) {
+        if (text == null) return "";
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        char[] chars = null;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (c >= KATAKANA_FIRST && c <= KATAKANA_LAST) {
+                if (chars == null) chars = folded.toCharArray();
+                chars[i] = (char) (c - KATAKANA_TO_HIRAGANA);
+            }
+        }
+        return (chars == null) ? folded : new String(chars);
+    }
+
+    public static boolean containsKana(String folded) {
+        for (int i = 0; i < folded.length(); i++) {
+            if (ROMAJI.containsKey(folded.charAt(i)) || folded.charAt(i) == SMALL_TSU) return true;
+        }
+        return false;
+    }
+
+    // Latin spelling of folded text: "らびっとほーる" becomes "rabittohoru". The long vowel mark is
+    // dropped, as most people leave it out when typing
+    public static String romaji(String folded) {
+        StringBuilder out = new StringBuilder(folded.length() * 2);
+        boolean doubleNext = false;
+
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (c == SMALL_TSU) {
+                doubleNext = true;
+                continue;
+            }
+            if (c == LONG_VOWEL) continue;
+
+            String syllable = ROMAJI.get(c);
+            if (syllable == null) {
+                out.append(c);
+                doubleNext = false;
+                continue;
+            }
+
+            if (isSmallKana(c) && out.length() > 0 && isVowel(out.charAt(out.length() - 1))) {
+                // Contracted sounds: き+ゃ is "kya", し+ゃ is "sha", ふ+ぁ is "fa"
+                int end = out.length() - 1;
+                boolean yoon = c == 'ゃ' || c == 'ゅ' || c == 'ょ';
+                if (yoon && out.charAt(end) == 'i') {
+                    // "shi", "chi" and "ji" already carry the y sound
+                    boolean palatal = (end >= 1 && out.charAt(end - 1) == 'j')
+                            || (end >= 2 && out.charAt(end - 1) == 'h' && (out.charAt(end - 2) == 's' || out.charAt(end - 2) == 'c'));
+                    out.setLength(end);
+                    out.append(palatal ? syllable.substring(1) : syllable);
+                } else if (!yoon) {
+                    out.setLength(end);
+                    out.append(syllable);
+                } else {
+                    out.append(syllable);
+                }
+                continue;
+            }
+
+            if (doubleNext) {
+                // っ doubles the next consonant, "tch" before "ch"
+                char first = syllable.charAt(0);
+                if (!isVowel(first)) out.append(syllable.startsWith("ch") ? 't' : first);
+                doubleNext = false;
+            }
+            out.append(syllable);
+        }
+        return out.toString();
+    }
+
+    private static boolean isSmallKana(char c) {
+        return c == 'ぁ' || c == 'ぃ' || c == 'ぅ' || c == 'ぇ' || c == 'ぉ'
+                || c == 'ゃ' || c == 'ゅ' || c == 'ょ' || c == 'ゎ';
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'i' || c == 'u' || c == 'e' || c == 'o';
+    }
+}
@@ -0,0 +1,262 @@
+import javazoom.jl.decoder.*;
+import javazoom.jl.player.AudioDevice;
+import javazoom.jl.player.FactoryRegistry;
+import javazoom.jl.player.JavaSoundAudioDeviceFactory;
+
+import java.io.BufferedInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// Decodes songs into a single audio output, one frame per playFrame() call from the playback engine.
+// When a song ends, the next one (asked from the listener and usually opened and pre-decoded ahead
+// of time) is written to the same line without closing it, so consecutive tracks play without a gap.
+public class TrackPlayer {
+
+    public interface Listener {
+        // Song to continue with once the current one ends, or null to stop there
+        Song upcomingSong();
+
+        // The output moved on to the next song, whose first sample is written at this line position
+        void trackChanged(Song song, int startPositionInMilli);
+
+        // The last song ended (not called when the player is stopped)
+        void playbackFinished();
+    }
+
+    // Frames decoded ahead for the next track, more than enough to cover the switch
+    private static final int PREBUFFER_FRAMES = 4;
+
+    static {
+        // Output on a line that can be paused instead of jlayer's default Java Sound device
+        FactoryRegistry registry = FactoryRegistry.systemRegistry();
+        registry.removeFactoryType(JavaSoundAudioDeviceFactory.class);
+        registry.addFactory(new LineAudioDevice.Factory());
+    }
+
+    // A song opened for playback, with its first frames possibly decoded ahead
+    private static class OpenTrack {
+        final Song song;
+        final Bitstream bitstream;
+        final Decoder decoder = new Decoder();
+        final ArrayDeque<short[]> buffered = new ArrayDeque<>();
+        int frequency;
+        int channels;
+
+        OpenTrack(Song song) throws Exception {
+            this(song, 0);
+        }
+
+        // Open the song positioned at startFrame, using its seek index to jump close to it
+        OpenTrack(Song song, int startFrame) throws Exception {
+            this.song = song;
+            FileChannel channel = FileChannel.open(Paths.get(song.getFilePath()), StandardOpenOption.READ);
+
+            int skip = startFrame;
+            SeekIndex seekIndex = (startFrame > 0) ? song.getSeekIndex() : null;
+            if (seekIndex != null) {
+                int indexedFrame = seekIndex.indexedFrameBefore(startFrame);
+                channel.position(seekIndex.offsetOf(indexedFrame));
+                skip = startFrame - indexedFrame;
+            }
+
+            bitstream = new Bitstream(new BufferedInputStream(Channels.newInputStream(channel)));
+            skipFrames(skip);
+        }
+
+        // Skip frames without decoding them
+        void skipFrames(int frames) throws BitstreamException {
+            for (int i = 0; i < frames; i++) {
+                if (bitstream.readFrame() == null) return;
+                bitstream.closeFrame();
+            }
+        }
+
+        // Decode the next frame, the returned buffer is only valid until the next call
+        SampleBuffer decodeFrame() throws JavaLayerException {
+            Header header = bitstream.readFrame();
+            if (header == null) return null;
+
+            try {
+                frequency = header.frequency();
+                channels = (header.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
+                return (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            } finally {
+                bitstream.closeFrame();
+            }
+        }
+
+        void prebuffer(int frames) throws JavaLayerException {
+            for (int i = 0; i < frames; i++) {
+                SampleBuffer output = decodeFrame();
+                if (output == null) return;
+                short[] samples = new short[output.getBufferLength()];
+                System.arraycopy(output.getBuffer(), 0, samples, 0, samples.length);
+                buffered.add(samples);
+            }
+        }
+
+        void close() {
+            try {
+                bitstream.close();
+            } catch (BitstreamException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final Listener listener;
+    private final AudioDevice audio;
+    private final Object nextLock = new Object();
+
+    private OpenTrack current;
+    private OpenTrack next;
+    private volatile boolean closed;
+    private volatile boolean paused;
+
+    // Format of the audio line, set by the first decoded frame
+    private int outputFrequency, outputChannels;
+
+    // Samples (per channel) written to the line so far, to know where each track starts
+    private long writtenSamples;
+
+    public TrackPlayer(Song song, int startFrame, Listener listener) throws Exception {
+        this.listener = listener;
+        current = new OpenTrack(song, startFrame);
+        audio = FactoryRegistry.systemRegistry().createAudioDevice();
+        audio.open(current.decoder);
+    }
+
+    // Decode and write the next frame, moving on to the upcoming song at the end of the current one.
+    // Returns false once playback is over, blocks while the audio line is full
+    public boolean playFrame() {
+        if (closed) return false;
+
+        try {
+            SampleBuffer output = current.decodeFrame();
+            if (output == null) {
+                // End of the song, continue on the same line if the next one has the same format
+                OpenTrack following = takeUpcomingTrack();
+                if (following == null || following.frequency != outputFrequency
+                        || following.channels != outputChannels) {
+                    if (following != null) following.close();
+
+                    // Let the line play what is left before reporting the end
+                    audio.flush();
+                    close();
+                    listener.playbackFinished();
+                    return false;
+                }
+
+                current.close();
+                current = following;
+                listener.trackChanged(current.song, samplesToMilli(writtenSamples, outputFrequency));
+
+                for (short[] samples : current.buffered) {
+                    write(samples, samples.length, outputChannels);
+                }
+                current.buffered.clear();
+                return true;
+            }
+
+            outputFrequency = current.frequency;
+            outputChannels = current.channels;
+            write(output.getBuffer(), output.getBufferLength(), outputChannels);
+            return true;
+        } catch (Exception e) {
+            // Reading from a stream closed by stop() is expected
+            if (!closed) e.printStackTrace();
+            close();
+            return false;
+        }
+    }
+
+    private void write(short[] samples, int length, int channels) throws JavaLayerException {
+        audio.write(samples, 0, length);
+        writtenSamples += length / channels;
+    }
+
+    // Open and pre-decode the song that should follow the current one, called from any thread
+    public void prepareNext(Song song) {
+        try {
+            OpenTrack track = new OpenTrack(song);
+            track.prebuffer(PREBUFFER_FRAMES);
+
+            OpenTrack previous;
+            synchronized (nextLock) {
+                previous = next;
+                next = track;
+            }
+            if (previous != null) previous.close();
+            if (closed) discardNext();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The prepared track if it is still the one the listener wants, otherwise open it now
+    private OpenTrack takeUpcomingTrack() throws Exception {
+        Song upcoming = listener.upcomingSong();
+
+        OpenTrack prepared;
+        synchronized (nextLock) {
+            prepared = next;
+            next = null;
+        }
+        if (prepared != null && prepared.song.equals(upcoming)) return prepared;
+        if (prepared != null) prepared.close();
+        if (upcoming == null) return null;
+
+        OpenTrack track = new OpenTrack(upcoming);
+        track.prebuffer(1);
+        return track;
+    }
+
+    private void discardNext() {
+        OpenTrack previous;
+        synchronized (nextLock) {
+            previous = next;
+            next = null;
+        }
+        if (previous != null) previous.close();
+    }
+
+    // Stop playing but keep the file, the decoder and the audio line open. The caller must stop
+    // calling playFrame() until resume()
+    public void pause() {
+        paused = true;
+        if (audio instanceof LineAudioDevice lineDevice) lineDevice.pause();
+    }
+
+    public void resume() {
+        paused = false;
+        if (audio instanceof LineAudioDevice lineDevice) lineDevice.resume();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // Milliseconds of audio played by the line since it was opened
+    public int getPosition() {
+        return audio.getPosition();
+    }
+
+    public void stop() {
+        close();
+    }
+
+    private synchronized void close() {
+        if (closed) return;
+        closed = true;
+        audio.close();
+        current.close();
+        discardNext();
+    }
+
+    private static int samplesToMilli(long samples, int frequency) {
+        return (frequency == 0) ? 0 : (int) (samples * 1000 / frequency);
+    }
+}